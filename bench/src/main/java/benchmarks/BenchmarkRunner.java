@@ -0,0 +1,40 @@
+package benchmarks;
+
+import java.lang.module.ModuleFinder;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * The main class of benchmarks.jar. It accepts the same arguments as JMH's own main class, but
+ * always adds the GC profiler, so every result reports its allocation rate (gc.alloc.rate.norm is
+ * the number of bytes allocated per operation) next to its time. If the JDK has the incubating
+ * Vector API, it is also added to every forked JVM, so that OBSTDoubleVector can use it.
+ */
+public class BenchmarkRunner {
+
+  private static final String VECTOR_MODULE = "jdk.incubator.vector";
+
+  public static void main(String[] args) throws Exception {
+    CommandLineOptions commandLine = new CommandLineOptions(args);
+    if (commandLine.shouldHelp()) {
+      commandLine.showHelp();
+      return;
+    }
+
+    OptionsBuilder builder = new OptionsBuilder();
+    builder.parent(commandLine).addProfiler(GCProfiler.class);
+    if (ModuleFinder.ofSystem().find(VECTOR_MODULE).isPresent()) {
+      builder.jvmArgsPrepend("--add-modules=" + VECTOR_MODULE);
+    }
+    Options options = builder.build();
+    Runner runner = new Runner(options);
+    if (commandLine.shouldList()) {
+      runner.list();
+    } else {
+      runner.run();
+    }
+  }
+}
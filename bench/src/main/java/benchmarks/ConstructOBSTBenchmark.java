@@ -0,0 +1,50 @@
+package benchmarks;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures OBST.constructOBST() on matrices that optimalBST() has already calculated. The
+ * matrices are calculated once per trial with the Knuth engine, which produces the same root
+ * matrix as the classic engine.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class ConstructOBSTBenchmark {
+
+  @Param({"10", "100", "1000", "10000"})
+  int n;
+
+  @Param({"uniform", "zipf"})
+  String distribution;
+
+  private Object obst;
+
+  @Setup
+  public void setUp() throws Throwable {
+    double[] pq = Distributions.probabilities(n, distribution);
+    obst = Project.newOBSTDouble("knuth", Distributions.sortedKeys(n), Distributions.p(pq, n),
+        Distributions.q(pq, n));
+    Project.optimalBST(obst);
+  }
+
+  @Benchmark
+  public Object constructOBST() throws Throwable {
+    Project.constructOBST(obst);
+    return Project.keyTree(obst);
+  }
+}
@@ -0,0 +1,158 @@
+package benchmarks;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+/**
+ * Generates the keys and search probabilities the benchmarks run on. Everything is generated from
+ * a fixed seed, so every run and every fork of a benchmark sees the same input.
+ */
+final class Distributions {
+
+  /**
+   * The range of a key value, the same as in Main.
+   */
+  static final int LOW = 100000001;
+  static final int HIGH = 999999999;
+
+  private static final long SEED = 42;
+
+  private Distributions() {
+  }
+
+  /**
+   * Generates n keys in the same range as Main.
+   *
+   * @param n Number of keys.
+   * @param distribution "random" for keys in random order, "ascending" or "descending" for keys
+   *     that are already sorted, or "duplicates" for random keys drawn from only n / 10 values.
+   * @return The keys.
+   */
+  static int[] keys(int n, String distribution) {
+    SplittableRandom random = new SplittableRandom(SEED);
+    int[] keys = new int[n];
+
+    switch (distribution) {
+      case "random":
+        for (int i = 0; i < n; i++) {
+          keys[i] = random.nextInt(LOW, HIGH);
+        }
+        break;
+      case "ascending":
+        keys = sortedKeys(n);
+        break;
+      case "descending":
+        int[] ascending = sortedKeys(n);
+        for (int i = 0; i < n; i++) {
+          keys[i] = ascending[n - 1 - i];
+        }
+        break;
+      case "duplicates":
+        int[] values = sortedKeys(Math.max(1, n / 10));
+        for (int i = 0; i < n; i++) {
+          keys[i] = values[random.nextInt(values.length)];
+        }
+        break;
+      default:
+        throw new IllegalArgumentException("Unknown key distribution " + distribution + ".");
+    }
+    return keys;
+  }
+
+  /**
+   * Generates n distinct keys in ascending order, like the key files in data/keys/ascending. The
+   * keys are evenly spread over the key range, with a random offset each.
+   *
+   * @param n Number of keys.
+   * @return The keys.
+   */
+  static int[] sortedKeys(int n) {
+    SplittableRandom random = new SplittableRandom(SEED);
+    int[] keys = new int[n];
+    int gap = (HIGH - LOW) / Math.max(1, n);
+
+    for (int i = 0; i < n; i++) {
+      keys[i] = LOW + i * gap + random.nextInt(Math.max(1, gap));
+    }
+    return keys;
+  }
+
+  /**
+   * Generates the search probabilities for n keys, as a single array of n key probabilities
+   * followed by n + 1 dummy key probabilities, which add up to 1.
+   *
+   * @param n Number of keys.
+   * @param distribution "uniform" for the same kind of probabilities ProbabilityGeneratorDouble
+   *     generates, "zipf" for a few keys that are searched for far more often than the rest, or
+   *     "alphabetic" for uniform dummy keys and real keys that are never searched for.
+   * @return The probabilities.
+   */
+  static double[] probabilities(int n, String distribution) {
+    SplittableRandom random = new SplittableRandom(SEED);
+    double[] pq = new double[2 * n + 1];
+
+    switch (distribution) {
+      case "uniform":
+        for (int i = 0; i < pq.length; i++) {
+          pq[i] = random.nextInt(Integer.MAX_VALUE);
+        }
+        break;
+      case "zipf":
+        for (int i = 0; i < pq.length; i++) {
+          pq[i] = 1.0 / (i + 1);
+        }
+        for (int i = pq.length - 1; i > 0; i--) {
+          int j = random.nextInt(i + 1);
+          double swap = pq[i];
+          pq[i] = pq[j];
+          pq[j] = swap;
+        }
+        break;
+      case "alphabetic":
+        for (int i = n; i < pq.length; i++) {
+          pq[i] = random.nextInt(Integer.MAX_VALUE);
+        }
+        break;
+      default:
+        throw new IllegalArgumentException("Unknown probability distribution " + distribution
+            + ".");
+    }
+
+    double sum = 0;
+    for (double v : pq) {
+      sum += v;
+    }
+    for (int i = 0; i < pq.length; i++) {
+      pq[i] /= sum;
+    }
+    return pq;
+  }
+
+  /**
+   * @return The key probabilities of a pq array from probabilities().
+   */
+  static double[] p(double[] pq, int n) {
+    return Arrays.copyOfRange(pq, 0, n);
+  }
+
+  /**
+   * @return The dummy key probabilities of a pq array from probabilities().
+   */
+  static double[] q(double[] pq, int n) {
+    return Arrays.copyOfRange(pq, n, pq.length);
+  }
+
+  /**
+   * @return The probabilities as BigDecimals rounded to 10 decimal places, the same precision
+   *     ProbabilityGeneratorBigDecimal generates, for OBSTBigDecimal.
+   */
+  static BigDecimal[] toBigDecimal(double[] arr) {
+    BigDecimal[] result = new BigDecimal[arr.length];
+    for (int i = 0; i < arr.length; i++) {
+      result[i] = BigDecimal.valueOf(arr[i]).setScale(10, RoundingMode.HALF_UP);
+    }
+    return result;
+  }
+}
@@ -0,0 +1,65 @@
+package benchmarks;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures FileOperations.fileToArr() on a key file written by FileOperations.arrToFile(), in the
+ * same format as the files in data/keys/ascending, and on the same keys written by
+ * FileOperations.arrToBinaryFile().
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class KeyFileBenchmark {
+
+  @Param({"10", "100", "1000", "10000", "100000"})
+  int n;
+
+  private File file;
+  private File binaryFile;
+
+  @Setup
+  public void setUp() throws Throwable {
+    int[] keys = Distributions.sortedKeys(n);
+    file = File.createTempFile("bench." + n + ".", ".keys.txt");
+    Project.arrToFile(keys, file.getPath());
+    binaryFile = File.createTempFile("bench." + n + ".", ".keys.bin");
+    Project.arrToBinaryFile(keys, binaryFile.getPath());
+  }
+
+  @TearDown
+  public void tearDown() throws IOException {
+    for (File f : new File[] {file, binaryFile}) {
+      if (!f.delete()) {
+        throw new IOException("Could not delete " + f + ".");
+      }
+    }
+  }
+
+  @Benchmark
+  public int[] fileToArr() throws Throwable {
+    return Project.fileToArr(file.getPath());
+  }
+
+  @Benchmark
+  public int[] binaryFileToArr() throws Throwable {
+    return Project.fileToArr(binaryFile.getPath());
+  }
+}
@@ -0,0 +1,74 @@
+package benchmarks;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the matrix exports Main performs after optimalBST(): the e matrix as text (the w
+ * matrix is written the same way), the root matrix as text, and the e matrix in the binary
+ * format. The matrices are calculated once per trial with the Knuth engine.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class MatrixWriterBenchmark {
+
+  @Param({"10", "100", "1000"})
+  int n;
+
+  private Object e;
+  private Object root;
+  private File file;
+
+  @Setup
+  public void setUp() throws Throwable {
+    double[] pq = Distributions.probabilities(n, "uniform");
+    Object obst = Project.newOBSTDouble("knuth", Distributions.sortedKeys(n),
+        Distributions.p(pq, n), Distributions.q(pq, n));
+    Project.optimalBST(obst);
+    e = Project.getE(obst);
+    root = Project.getRoot(obst);
+    file = File.createTempFile("bench." + n + ".", ".matrix");
+  }
+
+  @TearDown
+  public void tearDown() throws IOException {
+    if (!file.delete()) {
+      throw new IOException("Could not delete " + file + ".");
+    }
+  }
+
+  @Benchmark
+  public File writeEText() throws Throwable {
+    Project.doubleMatrixToFile(e, file.getPath(), 15, 10);
+    return file;
+  }
+
+  @Benchmark
+  public File writeRootText() throws Throwable {
+    Project.intMatrixToFile(root, file.getPath(), 8);
+    return file;
+  }
+
+  @Benchmark
+  public File writeEBinary() throws Throwable {
+    Project.doubleMatrixToBinaryFile(e, file.getPath());
+    return file;
+  }
+}
@@ -0,0 +1,55 @@
+package benchmarks;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures MergeSort.mergeSort(), parallelMergeSort() and radixSort() on keys like the ones Main
+ * generates. Each sort copies its input, so the same array can be sorted on every invocation.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MergeSortBenchmark {
+
+  @Param({"10", "100", "1000", "10000", "100000", "10000000"})
+  int n;
+
+  @Param({"random", "ascending", "descending", "duplicates"})
+  String distribution;
+
+  private int[] keys;
+
+  @Setup
+  public void setUp() {
+    keys = Distributions.keys(n, distribution);
+  }
+
+  @Benchmark
+  public int[] mergeSort() throws Throwable {
+    return Project.mergeSort(keys);
+  }
+
+  @Benchmark
+  public int[] parallelMergeSort() throws Throwable {
+    return Project.parallelMergeSort(keys);
+  }
+
+  @Benchmark
+  public int[] radixSort() throws Throwable {
+    return Project.radixSort(keys, Distributions.LOW, Distributions.HIGH);
+  }
+}
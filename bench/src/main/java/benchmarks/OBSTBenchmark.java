@@ -0,0 +1,62 @@
+package benchmarks;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures OBSTDouble.optimalBST() for each engine. Every invocation creates a new engine, so the
+ * matrices are allocated as they would be in Main, and the GC profiler reports that allocation.
+ *
+ * The classic engine needs O(n^3) time and every engine but "approx" needs O(n^2) memory, so the
+ * default sizes stop at 1000 keys. Larger sizes can be passed on the command line, e.g.
+ * "-p engine=approx -p n=100000".
+ *
+ * The "vector" engine only uses the Vector API if the jar was built with the vector profile (on
+ * JDK 17 or later); otherwise it measures the same engine with the scalar kernel.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class OBSTBenchmark {
+
+  @Param({"classic", "knuth", "parallel", "compensated", "vector", "tiled", "approx"})
+  String engine;
+
+  @Param({"10", "100", "1000"})
+  int n;
+
+  @Param({"uniform", "zipf", "alphabetic"})
+  String distribution;
+
+  private int[] keys;
+  private double[] p;
+  private double[] q;
+
+  @Setup
+  public void setUp() {
+    keys = Distributions.sortedKeys(n);
+    double[] pq = Distributions.probabilities(n, distribution);
+    p = Distributions.p(pq, n);
+    q = Distributions.q(pq, n);
+  }
+
+  @Benchmark
+  public Object optimalBST() throws Throwable {
+    Object obst = Project.newOBSTDouble(engine, keys, p, q);
+    Project.optimalBST(obst);
+    return obst;
+  }
+}
@@ -0,0 +1,55 @@
+package benchmarks;
+
+import java.math.BigDecimal;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures OBSTBigDecimal.optimalBST(). Every invocation creates a new engine, as in
+ * OBSTBenchmark. The probabilities have 10 decimal places, like those of
+ * ProbabilityGeneratorBigDecimal, so optimalBST() calculates in fixed point rather than falling back
+ * to BigDecimal arithmetic.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class OBSTBigDecimalBenchmark {
+
+  @Param({"10", "100", "1000"})
+  int n;
+
+  @Param({"uniform", "zipf"})
+  String distribution;
+
+  private int[] keys;
+  private BigDecimal[] p;
+  private BigDecimal[] q;
+
+  @Setup
+  public void setUp() {
+    keys = Distributions.sortedKeys(n);
+    double[] pq = Distributions.probabilities(n, distribution);
+    p = Distributions.toBigDecimal(Distributions.p(pq, n));
+    q = Distributions.toBigDecimal(Distributions.q(pq, n));
+  }
+
+  @Benchmark
+  public Object optimalBST() throws Throwable {
+    Object obst = Project.newOBSTBigDecimal(keys, p, q);
+    Project.optimalBST(obst);
+    return obst;
+  }
+}
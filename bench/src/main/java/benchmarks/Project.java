@@ -0,0 +1,321 @@
+package benchmarks;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.math.BigDecimal;
+
+/**
+ * Gives the benchmarks access to the assignment's classes. JMH does not allow benchmarks in the
+ * default package, and a class in a named package cannot refer to a class in the default package
+ * by name, so every class and member is looked up once, by name, into a static final method
+ * handle. The JIT treats static final handles as constants and inlines through them, so calling
+ * one costs the same as calling the method directly.
+ *
+ * The handles are adapted to take and return Object in place of the assignment's types, which is
+ * why the benchmarks hold engines and trees as Objects.
+ */
+final class Project {
+
+  private static final Class<?> OBST = load("OBST");
+  private static final Class<?> OBST_DOUBLE = load("OBSTDouble");
+  private static final Class<?> OBST_BIG_DECIMAL = load("OBSTBigDecimal");
+  private static final Class<?> BST = load("BST");
+  private static final Class<?> NODE = load("BST$Node");
+  private static final Class<?> MERGE_SORT = load("MergeSort");
+  private static final Class<?> FILE_OPERATIONS = load("FileOperations");
+  private static final Class<?> TRIANGULAR_DOUBLE_MATRIX = load("TriangularDoubleMatrix");
+  private static final Class<?> TRIANGULAR_INT_MATRIX = load("TriangularIntMatrix");
+  private static final Class<?> FROZEN_BST = load("FrozenBST");
+  private static final Class<?> LAYOUT = load("FrozenBST$Layout");
+
+  private static final MethodHandle OPTIMAL_BST = virtual(OBST, "optimalBST",
+      MethodType.methodType(void.class));
+  private static final MethodHandle CONSTRUCT_OBST = virtual(OBST, "constructOBST",
+      MethodType.methodType(void.class));
+  private static final MethodHandle GET_E = virtual(OBST_DOUBLE, "getE",
+      MethodType.methodType(TRIANGULAR_DOUBLE_MATRIX));
+  private static final MethodHandle GET_ROOT = virtual(OBST, "getRoot",
+      MethodType.methodType(TRIANGULAR_INT_MATRIX));
+  private static final MethodHandle BST_KEYS = getter(OBST, "bstKeys", BST);
+  private static final MethodHandle NEW_BST = constructor(BST, MethodType.methodType(void.class));
+  private static final MethodHandle ADD = virtual(BST, "add",
+      MethodType.methodType(void.class, int.class));
+  private static final MethodHandle TREE_ROOT = virtual(BST, "getRoot",
+      MethodType.methodType(NODE));
+  private static final MethodHandle SEARCH = virtual(BST, "search",
+      MethodType.methodType(NODE, NODE, int.class));
+  private static final MethodHandle CONTAINS_ALL = virtual(BST, "contains",
+      MethodType.methodType(void.class, int[].class, boolean[].class));
+  private static final MethodHandle NEW_FROZEN_BST = constructor(FROZEN_BST,
+      MethodType.methodType(void.class, BST, LAYOUT));
+  private static final MethodHandle FROZEN_SEARCH = virtual(FROZEN_BST, "search",
+      MethodType.methodType(int.class, int.class));
+  private static final MethodHandle MERGE_SORT_ARRAY = direct(MERGE_SORT, "mergeSort",
+      MethodType.methodType(int[].class, int[].class));
+  private static final MethodHandle PARALLEL_MERGE_SORT_ARRAY = direct(MERGE_SORT,
+      "parallelMergeSort", MethodType.methodType(int[].class, int[].class));
+  private static final MethodHandle RADIX_SORT_ARRAY = direct(MERGE_SORT, "radixSort",
+      MethodType.methodType(int[].class, int[].class, int.class, int.class));
+  private static final MethodHandle FILE_TO_ARR = direct(FILE_OPERATIONS, "fileToArr",
+      MethodType.methodType(int[].class, String.class));
+  private static final MethodHandle KEYS_TO_FILE = direct(FILE_OPERATIONS, "arrToFile",
+      MethodType.methodType(void.class, int[].class, String.class));
+  private static final MethodHandle KEYS_TO_BINARY_FILE = direct(FILE_OPERATIONS,
+      "arrToBinaryFile", MethodType.methodType(void.class, int[].class, String.class));
+  private static final MethodHandle DOUBLE_MATRIX_TO_FILE = direct(FILE_OPERATIONS, "arrToFile",
+      MethodType.methodType(void.class, TRIANGULAR_DOUBLE_MATRIX, String.class, int.class,
+          int.class));
+  private static final MethodHandle INT_MATRIX_TO_FILE = direct(FILE_OPERATIONS, "arrToFile",
+      MethodType.methodType(void.class, TRIANGULAR_INT_MATRIX, String.class, int.class));
+  private static final MethodHandle DOUBLE_MATRIX_TO_BINARY_FILE = direct(FILE_OPERATIONS,
+      "arrToBinaryFile", MethodType.methodType(void.class, TRIANGULAR_DOUBLE_MATRIX,
+          String.class));
+
+  private Project() {
+  }
+
+  /**
+   * Creates an OBSTDouble engine.
+   *
+   * @param engine "classic", "knuth", "parallel", "compensated", "vector", "tiled" or "approx", as
+   *     in Main.
+   * @param keys Key set to use to compute and construct the optimal binary search tree.
+   * @param p Probabilities of searching for each key in the key set.
+   * @param q Probabilities of searching for keys that don't exist in the key set.
+   * @return The engine, which has not calculated anything yet.
+   */
+  static Object newOBSTDouble(String engine, int[] keys, double[] p, double[] q) {
+    String name;
+    switch (engine) {
+      case "classic":
+        name = "OBSTDouble";
+        break;
+      case "knuth":
+        name = "OBSTDoubleKnuth";
+        break;
+      case "parallel":
+        name = "OBSTDoubleParallel";
+        break;
+      case "compensated":
+        name = "OBSTDoubleCompensated";
+        break;
+      case "vector":
+        name = "OBSTDoubleVector";
+        break;
+      case "tiled":
+        name = "OBSTDoubleTiled";
+        break;
+      case "approx":
+        name = "OBSTDoubleApprox";
+        break;
+      default:
+        throw new IllegalArgumentException("Unknown engine " + engine + ".");
+    }
+
+    MethodHandle create = constructor(load(name), MethodType.methodType(void.class, int[].class,
+        double[].class, double[].class, int.class));
+    return invoke(create, keys, p, q, keys.length);
+  }
+
+  /**
+   * Creates an OBSTBigDecimal.
+   *
+   * @param keys Key set to use to compute and construct the optimal binary search tree.
+   * @param p Probabilities of searching for each key in the key set.
+   * @param q Probabilities of searching for keys that don't exist in the key set.
+   * @return The engine, which has not calculated anything yet.
+   */
+  static Object newOBSTBigDecimal(int[] keys, BigDecimal[] p, BigDecimal[] q) {
+    MethodHandle create = constructor(OBST_BIG_DECIMAL, MethodType.methodType(void.class,
+        int[].class, BigDecimal[].class, BigDecimal[].class, int.class));
+    return invoke(create, keys, p, q, keys.length);
+  }
+
+  static void optimalBST(Object obst) throws Throwable {
+    OPTIMAL_BST.invokeExact(obst);
+  }
+
+  static void constructOBST(Object obst) throws Throwable {
+    CONSTRUCT_OBST.invokeExact(obst);
+  }
+
+  static Object getE(Object obst) throws Throwable {
+    return (Object) GET_E.invokeExact(obst);
+  }
+
+  static Object getRoot(Object obst) throws Throwable {
+    return (Object) GET_ROOT.invokeExact(obst);
+  }
+
+  /**
+   * @return The tree of keys built by constructOBST().
+   */
+  static Object keyTree(Object obst) throws Throwable {
+    return (Object) BST_KEYS.invokeExact(obst);
+  }
+
+  static Object newBST() throws Throwable {
+    return (Object) NEW_BST.invokeExact();
+  }
+
+  static void add(Object tree, int data) throws Throwable {
+    ADD.invokeExact(tree, data);
+  }
+
+  static Object treeRoot(Object tree) throws Throwable {
+    return (Object) TREE_ROOT.invokeExact(tree);
+  }
+
+  static Object search(Object tree, Object root, int data) throws Throwable {
+    return (Object) SEARCH.invokeExact(tree, root, data);
+  }
+
+  static void contains(Object tree, int[] queries, boolean[] found) throws Throwable {
+    CONTAINS_ALL.invokeExact(tree, queries, found);
+  }
+
+  /**
+   * Freezes a tree into a FrozenBST.
+   *
+   * @param tree The BST to freeze.
+   * @param layout The name of a FrozenBST.Layout, e.g. "EYTZINGER".
+   * @return The FrozenBST.
+   */
+  @SuppressWarnings({"unchecked", "rawtypes"})
+  static Object freeze(Object tree, String layout) throws Throwable {
+    return (Object) NEW_FROZEN_BST.invokeExact(tree, (Object) Enum.valueOf((Class) LAYOUT, layout));
+  }
+
+  static int frozenSearch(Object frozen, int data) throws Throwable {
+    return (int) FROZEN_SEARCH.invokeExact(frozen, data);
+  }
+
+  static int[] mergeSort(int[] arr) throws Throwable {
+    return (int[]) MERGE_SORT_ARRAY.invokeExact(arr);
+  }
+
+  static int[] parallelMergeSort(int[] arr) throws Throwable {
+    return (int[]) PARALLEL_MERGE_SORT_ARRAY.invokeExact(arr);
+  }
+
+  static int[] radixSort(int[] arr, int low, int high) throws Throwable {
+    return (int[]) RADIX_SORT_ARRAY.invokeExact(arr, low, high);
+  }
+
+  static int[] fileToArr(String fileName) throws Throwable {
+    return (int[]) FILE_TO_ARR.invokeExact(fileName);
+  }
+
+  static void arrToFile(int[] arr, String fileName) throws Throwable {
+    KEYS_TO_FILE.invokeExact(arr, fileName);
+  }
+
+  static void arrToBinaryFile(int[] arr, String fileName) throws Throwable {
+    KEYS_TO_BINARY_FILE.invokeExact(arr, fileName);
+  }
+
+  static void doubleMatrixToFile(Object matrix, String fileName, int whitespace, int precision)
+      throws Throwable {
+    DOUBLE_MATRIX_TO_FILE.invokeExact(matrix, fileName, whitespace, precision);
+  }
+
+  static void intMatrixToFile(Object matrix, String fileName, int whitespace) throws Throwable {
+    INT_MATRIX_TO_FILE.invokeExact(matrix, fileName, whitespace);
+  }
+
+  static void doubleMatrixToBinaryFile(Object matrix, String fileName) throws Throwable {
+    DOUBLE_MATRIX_TO_BINARY_FILE.invokeExact(matrix, fileName);
+  }
+
+  /**
+   * Loads one of the assignment's classes from the default package.
+   */
+  private static Class<?> load(String name) {
+    try {
+      return Class.forName(name);
+    } catch (ClassNotFoundException e) {
+      throw new IllegalStateException("The assignment class " + name + " was not compiled into "
+          + "the benchmark jar.", e);
+    }
+  }
+
+  /**
+   * Several members the benchmarks need are package-private. The assignment's classes are in the
+   * unnamed module, which is open to every caller, so a private lookup can reach them.
+   */
+  private static MethodHandles.Lookup lookupIn(Class<?> owner) {
+    try {
+      return MethodHandles.privateLookupIn(owner, MethodHandles.lookup());
+    } catch (IllegalAccessException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  private static MethodHandle virtual(Class<?> owner, String name, MethodType type) {
+    try {
+      return erase(lookupIn(owner).findVirtual(owner, name, type));
+    } catch (ReflectiveOperationException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  private static MethodHandle direct(Class<?> owner, String name, MethodType type) {
+    try {
+      return erase(lookupIn(owner).findStatic(owner, name, type));
+    } catch (ReflectiveOperationException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  private static MethodHandle constructor(Class<?> owner, MethodType type) {
+    try {
+      return erase(lookupIn(owner).findConstructor(owner, type));
+    } catch (ReflectiveOperationException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  private static MethodHandle getter(Class<?> owner, String name, Class<?> type) {
+    try {
+      return erase(lookupIn(owner).findGetter(owner, name, type));
+    } catch (ReflectiveOperationException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  /**
+   * Replaces every assignment type in a handle's signature with Object, so the handle can be
+   * called with invokeExact() from code that cannot name those types.
+   */
+  private static MethodHandle erase(MethodHandle handle) {
+    MethodType type = handle.type();
+    for (int i = 0; i < type.parameterCount(); i++) {
+      if (isAssignmentType(type.parameterType(i))) {
+        type = type.changeParameterType(i, Object.class);
+      }
+    }
+    if (isAssignmentType(type.returnType())) {
+      type = type.changeReturnType(Object.class);
+    }
+    return handle.asType(type);
+  }
+
+  private static boolean isAssignmentType(Class<?> type) {
+    return !type.isPrimitive() && !type.isArray() && type.getPackageName().isEmpty();
+  }
+
+  /**
+   * Calls a handle that is only used while setting up a benchmark, so it does not need to be
+   * called exactly.
+   */
+  private static Object invoke(MethodHandle handle, Object... args) {
+    try {
+      return handle.invokeWithArguments(args);
+    } catch (RuntimeException | Error e) {
+      throw e;
+    } catch (Throwable e) {
+      throw new IllegalStateException(e);
+    }
+  }
+}
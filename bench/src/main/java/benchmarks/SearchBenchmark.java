@@ -0,0 +1,143 @@
+package benchmarks;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures BST.search() and FrozenBST.search(), reported per lookup. Lookups are made in batches of QUERIES so that the
+ * time of a single lookup in a small tree is not lost in the benchmark's own overhead. The
+ * "contains" benchmarks hand the whole batch to BST.contains(int[], boolean[]) instead, in random
+ * order (interleaved searches) or sorted (one finger search); they always search the nodes, so
+ * they only need "-p layout=nodes".
+ *
+ * The "obst" tree is built by constructOBST() from the "approx" engine, which handles every size
+ * up to 100000 keys; the "random" tree is built by calling BST.add() with the keys in random
+ * order. The tree is either searched as it is ("nodes") or frozen into one of FrozenBST's
+ * layouts. Lookups either hit a key, miss every key, or alternate between the two.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SearchBenchmark {
+
+  private static final int QUERIES = 1024;
+
+  @Param({"10", "100", "1000", "10000", "100000"})
+  int n;
+
+  @Param({"obst", "random"})
+  String tree;
+
+  @Param({"nodes", "EYTZINGER", "VAN_EMDE_BOAS"})
+  String layout;
+
+  @Param({"hit", "miss", "mixed"})
+  String lookups;
+
+  private Object bst;
+  private Object frozen;
+  private Object root;
+  private int[] queries;
+  private int[] sortedQueries;
+  private boolean[] found;
+
+  @Setup
+  public void setUp() throws Throwable {
+    int[] keys = Distributions.sortedKeys(n);
+
+    if (tree.equals("obst")) {
+      double[] pq = Distributions.probabilities(n, "uniform");
+      Object obst = Project.newOBSTDouble("approx", keys, Distributions.p(pq, n),
+          Distributions.q(pq, n));
+      Project.optimalBST(obst);
+      Project.constructOBST(obst);
+      bst = Project.keyTree(obst);
+    } else {
+      keys = Distributions.keys(n, "random");
+      bst = Project.newBST();
+      for (int key : keys) {
+        Project.add(bst, key);
+      }
+    }
+    root = Project.treeRoot(bst);
+    if (!layout.equals("nodes")) {
+      frozen = Project.freeze(bst, layout);
+    }
+
+    int[] sorted = keys.clone();
+    Arrays.sort(sorted);
+    SplittableRandom random = new SplittableRandom(7);
+    queries = new int[QUERIES];
+    for (int i = 0; i < QUERIES; i++) {
+      int key = keys[random.nextInt(n)];
+      boolean hit = lookups.equals("hit") || (lookups.equals("mixed") && i % 2 == 0);
+      queries[i] = hit ? key : missNear(sorted, key);
+    }
+    sortedQueries = queries.clone();
+    Arrays.sort(sortedQueries);
+    found = new boolean[QUERIES];
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(QUERIES)
+  public int search() throws Throwable {
+    int found = 0;
+    if (frozen == null) {
+      for (int query : queries) {
+        if (Project.search(bst, root, query) != null) {
+          found++;
+        }
+      }
+    } else {
+      for (int query : queries) {
+        if (Project.frozenSearch(frozen, query) != 0) {
+          found++;
+        }
+      }
+    }
+    return found;
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(QUERIES)
+  public boolean[] contains() throws Throwable {
+    Project.contains(bst, queries, found);
+    return found;
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(QUERIES)
+  public boolean[] containsSorted() throws Throwable {
+    Project.contains(bst, sortedQueries, found);
+    return found;
+  }
+
+  /**
+   * @param sorted The keys in the tree, sorted.
+   * @param key A key in the tree.
+   * @return The closest value below key that is not in the tree.
+   */
+  private static int missNear(int[] sorted, int key) {
+    int miss = key - 1;
+    while (Arrays.binarySearch(sorted, miss) >= 0) {
+      miss--;
+    }
+    return miss;
+  }
+}
@@ -0,0 +1,80 @@
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * A RootKernel that calculates as many candidate costs at once as the processor's widest vector
+ * register holds, using the incubating Vector API. It needs JDK 16 or later, so it is kept out of
+ * src, which builds with JDK 11; RootKernel.create() loads it by name when it has been compiled
+ * and the JVM was started with --add-modules jdk.incubator.vector.
+ *
+ * The candidates are searched twice. The first pass only keeps the lowest cost seen in each lane,
+ * then takes the lowest of the lanes. The second pass calculates the costs again until it finds
+ * the first candidate whose cost is exactly that lowest cost, which is the candidate the scalar
+ * kernel would have chosen. Both passes add the costs in the same order as the scalar kernel, so
+ * they agree to the bit. The candidates that do not fill a whole vector are tried one at a time,
+ * after every candidate before them.
+ *
+ * Tracking the position of the best candidate in a second vector during the first pass would save
+ * the second pass, but with JDK 17 a loop that carries a blended vector from one iteration to the
+ * next is easily compiled into code that allocates a box for every vector on every iteration.
+ * The second pass usually stops early, and carries nothing between iterations.
+ */
+class VectorRootKernel extends RootKernel {
+
+  private static final VectorSpecies<Double> SPECIES = DoubleVector.SPECIES_PREFERRED;
+
+  @Override
+  String describe() {
+    return "vector (" + SPECIES.length() + " lanes)";
+  }
+
+  @Override
+  int argmin(double[] left, int leftStart, double[] right, int rightStart, int count, double w) {
+    int lanes = SPECIES.length();
+    int vectorCount = SPECIES.loopBound(count);
+    DoubleVector weight = DoubleVector.broadcast(SPECIES, w);
+
+    double min = Double.MAX_VALUE;
+    if (vectorCount > 0) {
+      DoubleVector laneMin = DoubleVector.broadcast(SPECIES, Double.MAX_VALUE);
+      for (int k = 0; k < vectorCount; k += lanes) {
+        laneMin = laneMin.min(cost(left, leftStart + k, right, rightStart + k, weight));
+      }
+      min = laneMin.reduceLanes(VectorOperators.MIN);
+    }
+    for (int k = vectorCount; k < count; k++) {
+      min = Math.min(min, left[leftStart + k] + right[rightStart + k] + w);
+    }
+
+    // Like the scalar kernel, a cost has to be below Double.MAX_VALUE to be chosen at all.
+    if (!(min < Double.MAX_VALUE)) {
+      return -1;
+    }
+
+    for (int k = 0; k < vectorCount; k += lanes) {
+      VectorMask<Double> lowest = cost(left, leftStart + k, right, rightStart + k, weight)
+          .compare(VectorOperators.EQ, min);
+      if (lowest.anyTrue()) {
+        return k + lowest.firstTrue();
+      }
+    }
+    for (int k = vectorCount; k < count; k++) {
+      if (left[leftStart + k] + right[rightStart + k] + w == min) {
+        return k;
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * @return The costs of the candidates whose operands start at leftStart and rightStart.
+   */
+  private static DoubleVector cost(double[] left, int leftStart, double[] right, int rightStart,
+      DoubleVector weight) {
+    return DoubleVector.fromArray(SPECIES, left, leftStart)
+        .add(DoubleVector.fromArray(SPECIES, right, rightStart))
+        .add(weight);
+  }
+}
@@ -0,0 +1,154 @@
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Counts how often each key, and each gap between keys, is searched for, so that the tree can be
+ * optimized for the searches it actually serves instead of for made-up probabilities. A search
+ * for a key that is in the tree counts towards that key's p; a search for a missing key counts
+ * towards the dummy key (q) of the gap it falls into. getCounts() gives the totals in the same
+ * order as ProbabilityGenerator's pq array, and toDoubleProbabilities() and
+ * toBigDecimalProbabilities() normalize them into p and q arrays for OBSTDouble or OBSTBigDecimal.
+ *
+ * Searches go through a FrozenBST, which finds the key's index or the gap's index as part of the
+ * search, so counting costs one extra increment. Many threads may search at once. Like LongAdder,
+ * the counts are split into stripes that are only added up when they are read, but here every
+ * thread gets a stripe of its own, so no two threads ever write the same counter. An increment is
+ * then a plain read and write with no atomic instruction and no cache line shared with another
+ * thread; opaque access only makes sure a reader never sees half of a count.
+ */
+public class AccessCounter {
+
+  private final FrozenBST tree;
+  private final int n;
+
+  private static final VarHandle COUNTER = MethodHandles.arrayElementVarHandle(long[].class);
+
+  /**
+   * The stripe of each thread that has searched. Index k - 1 counts key k, and index n + d counts
+   * dummy key d.
+   */
+  private final ThreadLocal<long[]> stripe;
+
+  /**
+   * Every stripe that has been created, including those of threads that have since finished, so
+   * that their searches are still counted.
+   */
+  private final List<long[]> stripes = new ArrayList<>();
+
+  /**
+   * Counts the searches of a tree.
+   *
+   * @param tree The tree to search.
+   */
+  public AccessCounter(BST tree) {
+    this(new FrozenBST(tree, FrozenBST.Layout.VAN_EMDE_BOAS));
+  }
+
+  /**
+   * Counts the searches of a frozen tree.
+   *
+   * @param tree The tree to search.
+   */
+  public AccessCounter(FrozenBST tree) {
+    this.tree = tree;
+    n = tree.size();
+    stripe = ThreadLocal.withInitial(this::createStripe);
+  }
+
+  /**
+   * Searches for a key and counts the search.
+   *
+   * @param data The key to search for.
+   * @return The index of the key (its 1-based position in sorted order), or 0 if it is not in the
+   *     tree.
+   */
+  public int search(int data) {
+    int location = tree.locate(data);
+
+    // A hit at key k is counted at k - 1, and a miss at dummy key d (location -(d + 1)) at n + d.
+    int counter = (location > 0) ? location - 1 : n - location - 1;
+    long[] counts = stripe.get();
+    COUNTER.setOpaque(counts, counter, (long) COUNTER.getOpaque(counts, counter) + 1);
+    return Math.max(location, 0);
+  }
+
+  /**
+   * @return The number of keys in the tree.
+   */
+  public int size() {return n;}
+
+  /**
+   * Adds up the stripes. Searches that happen while the counts are read may or may not be
+   * included.
+   *
+   * @return The number of searches for each of the n keys, followed by the number of searches for
+   *     each of the n + 1 dummy keys.
+   */
+  public long[] getCounts() {
+    long[] counts = new long[2 * n + 1];
+    synchronized (stripes) {
+      for (long[] s : stripes) {
+        for (int i = 0; i < counts.length; i++) {
+          counts[i] += (long) COUNTER.getOpaque(s, i);
+        }
+      }
+    }
+    return counts;
+  }
+
+  /**
+   * Sets every count back to 0, e.g. to start a new window of traffic. A search counted by
+   * another thread at the same moment may be lost, or may survive the reset.
+   */
+  public void reset() {
+    synchronized (stripes) {
+      for (long[] s : stripes) {
+        for (int i = 0; i < s.length; i++) {
+          COUNTER.setOpaque(s, i, 0L);
+        }
+      }
+    }
+  }
+
+  /**
+   * @return The counts so far as probabilities for OBSTDouble.
+   * @throws IllegalStateException if nothing has been searched for yet.
+   */
+  public ProbabilityGeneratorDouble toDoubleProbabilities() {
+    long[] counts = getCounts();
+    checkCounted(counts);
+    return new ProbabilityGeneratorDouble(counts);
+  }
+
+  /**
+   * @return The counts so far as probabilities for OBSTBigDecimal.
+   * @throws IllegalStateException if nothing has been searched for yet.
+   */
+  public ProbabilityGeneratorBigDecimal toBigDecimalProbabilities() {
+    long[] counts = getCounts();
+    checkCounted(counts);
+    return new ProbabilityGeneratorBigDecimal(counts);
+  }
+
+  /**
+   * Creates the stripe of the thread that is searching for the first time.
+   */
+  private long[] createStripe() {
+    long[] s = new long[2 * n + 1];
+    synchronized (stripes) {
+      stripes.add(s);
+    }
+    return s;
+  }
+
+  private static void checkCounted(long[] counts) {
+    for (long count : counts) {
+      if (count != 0) {
+        return;
+      }
+    }
+    throw new IllegalStateException("No searches have been counted yet.");
+  }
+}
@@ -1,5 +1,6 @@
-import java.util.ArrayList;
-import java.util.List;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Arrays;
 
 /**
  * A typical Binary Search Tree data structure.
@@ -14,9 +15,13 @@ public class BST {
     private int data;
     private Node left;
     public Node getLeft() { return left; }
+    void setLeft(Node left) { this.left = left; }
 
     private Node right;
     public Node getRight() { return right; }
+    void setRight(Node right) { this.right = right; }
+
+    public int getData() { return data; }
 
     public Node(int data) {
       this.data = data;
@@ -44,8 +49,244 @@ public class BST {
     }
   }
 
+  /**
+   * Number of searches searchAll() keeps in flight at once when the queries are not sorted.
+   */
+  static final int LANES = 8;
+
+  /**
+   * Searches for every value in a batch.
+   *
+   * @param queries The values to search for.
+   * @return Whether each query is in the tree.
+   */
+  public boolean[] contains(int[] queries) {
+    boolean[] found = new boolean[queries.length];
+    contains(queries, found);
+    return found;
+  }
+
+  /**
+   * Searches for every value in a batch, without allocating anything per query. See searchAll().
+   *
+   * @param queries The values to search for.
+   * @param found Set to whether each query is in the tree. Must be at least as long as queries.
+   */
+  public void contains(int[] queries, boolean[] found) {
+    if (found.length < queries.length) {
+      throw new IllegalArgumentException("found must be at least as long as queries.");
+    }
+    searchAll(queries, null, found, null, 0);
+  }
+
+  /**
+   * Searches for every value in a batch, and reports for each one whether it was found and, if
+   * shadow is given, the value at the same place in shadow. shadow must have exactly the same
+   * shape as this tree; OBST's bstIndexes has the shape of bstKeys, so this gives the index of
+   * each key. Either result array may be null.
+   *
+   * If the queries are in ascending order, the tree is walked once in order alongside them, as a
+   * finger search: the path to the last node found is kept on a stack, and each query only climbs
+   * that path as far as the lowest node whose subtree can hold it before going down again. A
+   * subtree that is climbed out of can never hold a later query, so no edge is ever gone down
+   * twice, and the whole batch costs O(n + m) steps as well as at most O(m * depth).
+   *
+   * Otherwise, LANES searches run at once, each taking one step down the tree in turn, and a lane
+   * that finishes starts on the next query. Each step loads a node that is likely to be a cache
+   * miss, and the steps of different lanes do not depend on each other, so the processor can wait
+   * for several of those misses at the same time instead of one after the other.
+   *
+   * @param queries The values to search for.
+   * @param shadow A tree of the same shape to read the results from, or null.
+   * @param found Set to whether each query is in the tree, or null.
+   * @param values Set to the value of shadow at each query's place, or to missing if the query is
+   *     not in the tree, or null.
+   * @param missing The value reported for a query that is not in the tree.
+   */
+  void searchAll(int[] queries, BST shadow, boolean[] found, int[] values, int missing) {
+    boolean ascending = true;
+    for (int k = 1; k < queries.length && ascending; k++) {
+      ascending = queries[k - 1] <= queries[k];
+    }
+    Node shadowRoot = (shadow == null) ? null : shadow.root;
+
+    if (ascending) {
+      searchAscending(queries, shadowRoot, found, values, missing);
+    } else {
+      searchInterleaved(queries, shadowRoot, found, values, missing);
+    }
+  }
+
+  /**
+   * The finger search of searchAll(), for queries in ascending order.
+   */
+  private void searchAscending(int[] queries, Node shadowRoot, boolean[] found, int[] values,
+      int missing) {
+    if (root == null) {
+      report(queries.length, found, values, missing);
+      return;
+    }
+
+    // The path from the root to the last node reached, the same path in shadow, and, for each
+    // node on it, the value its subtree's keys are all less than. The root's subtree has no such
+    // bound.
+    Node[] path = new Node[64];
+    Node[] shadowPath = new Node[64];
+    long[] bound = new long[64];
+    int top = 0;
+    path[0] = root;
+    shadowPath[0] = shadowRoot;
+    bound[0] = Long.MAX_VALUE;
+
+    for (int k = 0; k < queries.length; k++) {
+      int query = queries[k];
+
+      // Climb to the lowest node on the path whose subtree can hold the query. The earlier
+      // queries were all smaller, so only the upper bound can rule a subtree out.
+      while (query >= bound[top]) {
+        top--;
+      }
+
+      Node node = path[top];
+      Node shadowNode = shadowPath[top];
+      while (node.data != query) {
+        long childBound;
+        Node child;
+        Node shadowChild;
+        if (query < node.data) {
+          child = node.left;
+          shadowChild = (shadowNode == null) ? null : shadowNode.left;
+          childBound = node.data;
+        } else {
+          child = node.right;
+          shadowChild = (shadowNode == null) ? null : shadowNode.right;
+          childBound = bound[top];
+        }
+        if (child == null) {
+          break;
+        }
+
+        if (++top == path.length) {
+          path = Arrays.copyOf(path, 2 * top);
+          shadowPath = Arrays.copyOf(shadowPath, 2 * top);
+          bound = Arrays.copyOf(bound, 2 * top);
+        }
+        path[top] = child;
+        shadowPath[top] = shadowChild;
+        bound[top] = childBound;
+        node = child;
+        shadowNode = shadowChild;
+      }
+
+      boolean hit = node.data == query;
+      if (found != null) {
+        found[k] = hit;
+      }
+      if (values != null) {
+        values[k] = hit ? shadowNode.data : missing;
+      }
+    }
+  }
+
+  /**
+   * The interleaved search of searchAll(), for queries in any order.
+   */
+  private void searchInterleaved(int[] queries, Node shadowRoot, boolean[] found,
+      int[] values, int missing) {
+    if (root == null) {
+      report(queries.length, found, values, missing);
+      return;
+    }
+
+    // The query each lane is searching for (-1 if the lane is idle), and where it has got to.
+    int[] lane = new int[LANES];
+    Node[] cursor = new Node[LANES];
+    Node[] shadowCursor = new Node[LANES];
+    int next = 0;
+    int busy = 0;
+    for (int l = 0; l < LANES; l++) {
+      if (next < queries.length) {
+        lane[l] = next++;
+        cursor[l] = root;
+        shadowCursor[l] = shadowRoot;
+        busy++;
+      } else {
+        lane[l] = -1;
+      }
+    }
+
+    while (busy > 0) {
+      for (int l = 0; l < LANES; l++) {
+        int k = lane[l];
+        if (k < 0) {
+          continue;
+        }
+        int query = queries[k];
+        Node node = cursor[l];
+        Node shadowNode = shadowCursor[l];
+
+        if (node != null && node.data != query) {
+          if (query < node.data) {
+            cursor[l] = node.left;
+            shadowCursor[l] = (shadowNode == null) ? null : shadowNode.left;
+          } else {
+            cursor[l] = node.right;
+            shadowCursor[l] = (shadowNode == null) ? null : shadowNode.right;
+          }
+          continue;
+        }
+
+        // The search is over: node holds the query, or the search fell off the tree.
+        boolean hit = node != null;
+        if (found != null) {
+          found[k] = hit;
+        }
+        if (values != null) {
+          values[k] = hit ? shadowNode.data : missing;
+        }
+        if (next < queries.length) {
+          lane[l] = next++;
+          cursor[l] = root;
+          shadowCursor[l] = shadowRoot;
+        } else {
+          lane[l] = -1;
+          cursor[l] = null;
+          shadowCursor[l] = null;
+          busy--;
+        }
+      }
+    }
+  }
+
+  /**
+   * Reports every query as missing, for an empty tree.
+   */
+  private static void report(int count, boolean[] found, int[] values, int missing) {
+    if (found != null) {
+      Arrays.fill(found, 0, count, false);
+    }
+    if (values != null) {
+      Arrays.fill(values, 0, count, missing);
+    }
+  }
+
   private Node root;
 
+  /**
+   * @return The root of the tree, or null if the tree is empty.
+   */
+  public Node getRoot() { return root; }
+
+  /**
+   * Replaces the contents of the tree with an already-linked structure of nodes. The caller is
+   * responsible for making sure the nodes are in binary search tree order.
+   *
+   * @param root The root of the new structure.
+   */
+  void setRoot(Node root) {
+    this.root = root;
+  }
+
   /**
    * Initializes an empty binary search tree.
    */
@@ -53,6 +294,17 @@ public class BST {
     root = null;
   }
 
+  /**
+   * Creates a node that is not yet linked into the tree. Used with setRoot() to build a tree of a
+   * known shape without searching from the root for every node.
+   *
+   * @param data The value to store in the node.
+   * @return The new node.
+   */
+  Node createNode(int data) {
+    return new Node(data);
+  }
+
   /**
    * Used externally to add a node to the binary search tree.
    *
@@ -81,171 +333,26 @@ public class BST {
   }
 
   /**
-   * Provides the functionality for printVertically() to print the binary search tree.
-   *
-   * NOTE: This method was taken from:
-   * https://stackoverflow.com/questions/4965335/how-to-print-binary-tree-diagram
-   *
-   * Since the function of this method is purely aesthetic and has no relation to the assignment
-   * requirements, I did not see the harm in copying this code directly.
-   * @param sb The string builder.
-   * @param padding Corresponds to the number of nodes beneath the current node.
-   * @param pointer Points to a tree node. If terminating, points right; else points right and down.
-   * @param root The current node being iterated on.
-   */
-  private void traversePreOrder(StringBuilder sb, String padding, String pointer, Node root) {
-    if (root != null) {
-      sb.append(padding);
-      sb.append(pointer);
-      sb.append(root.data);
-      sb.append("\n");
-
-      StringBuilder paddingBuilder = new StringBuilder(padding);
-      paddingBuilder.append("│  ");
-
-      String paddingForBoth = paddingBuilder.toString();
-      String pointerForRight = "└──";
-      String pointerForLeft = (root.right != null) ? "├──" : "└──";
-
-      traversePreOrder(sb, paddingForBoth, pointerForLeft, root.left);
-      traversePreOrder(sb, paddingForBoth, pointerForRight, root.right);
-    }
-  }
-
-  /**
-   * Prints the binary search tree in a vertical format.
+   * Prints the binary search tree in a vertical format. See TreeRenderer.
    */
   public void printVertical() {
-    StringBuilder sb = new StringBuilder();
-    traversePreOrder(sb, "", "", root);
-    System.out.print(sb.toString());
+    try {
+      new TreeRenderer(OBST.PrintFormat.VERTICAL).render(this, System.out);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
   }
 
   /**
    * Prints the binary search tree in a horizontal format.
    * This works well for smaller trees, but large trees quickly become unreadable due to the amount
-   * of horizontal scrolling that is needed.
-   *
-   * NOTE: This method was taken from:
-   * https://stackoverflow.com/questions/4965335/how-to-print-binary-tree-diagram
-   *
-   * Since the function of this method is purely aesthetic and has no relation to the assignment
-   * requirements, I did not see the harm in copying this code directly.
+   * of horizontal scrolling that is needed. See TreeRenderer.
    */
   public void printHorizontal() {
-    List<List<String>> lines = new ArrayList<>();
-    List<Node> level = new ArrayList<>();
-    List<Node> next = new ArrayList<>();
-
-    level.add(root);
-    int nn = 1;
-
-    int widest = 0;
-
-    while (nn != 0) {
-      List<String> line = new ArrayList<>();
-
-      nn = 0;
-
-      for (Node n : level) {
-        if (n == null) {
-          line.add(null);
-
-          next.add(null);
-          next.add(null);
-        } else {
-          String aa = Integer.toString(root.data);
-          line.add(aa);
-          if (aa.length() > widest) {
-            widest = aa.length();
-          }
-
-          next.add(n.getLeft());
-          next.add(n.getRight());
-
-          if (n.getLeft() != null) {
-            nn++;
-          }
-          if (n.getRight() != null) {
-            nn++;
-          }
-        }
-      }
-
-      if (widest % 2 == 1) {
-        widest++;
-      }
-
-      lines.add(line);
-
-      List<Node> tmp = level;
-      level = next;
-      next = tmp;
-      next.clear();
-    }
-
-    int perpiece = lines.get(lines.size() - 1).size() * (widest + 4);
-    for (int i = 0; i < lines.size(); i++) {
-      List<String> line = lines.get(i);
-      int hpw = (int) Math.floor(perpiece / 2f) - 1;
-
-      if (i > 0) {
-        for (int j = 0; j < line.size(); j++) {
-
-          // split node
-          char c = ' ';
-          if (j % 2 == 1) {
-            if (line.get(j - 1) != null) {
-              c = (line.get(j) != null) ? '┴' : '┘';
-            } else {
-              if (j < line.size() && line.get(j) != null) {
-                c = '└';
-              }
-            }
-          }
-          System.out.print(c);
-
-          // lines and spaces
-          if (line.get(j) == null) {
-            for (int k = 0; k < perpiece - 1; k++) {
-              System.out.print(" ");
-            }
-          } else {
-
-            for (int k = 0; k < hpw; k++) {
-              System.out.print(j % 2 == 0 ? " " : "─");
-            }
-            System.out.print(j % 2 == 0 ? "┌" : "┐");
-            for (int k = 0; k < hpw; k++) {
-              System.out.print(j % 2 == 0 ? "─" : " ");
-            }
-          }
-        }
-        System.out.println();
-      }
-
-      // print line of numbers
-      for (int j = 0; j < line.size(); j++) {
-
-        String f = line.get(j);
-        if (f == null) {
-          f = "";
-        }
-        int gap1 = (int) Math.ceil(perpiece / 2f - f.length() / 2f);
-        int gap2 = (int) Math.floor(perpiece / 2f - f.length() / 2f);
-
-        // a number
-        for (int k = 0; k < gap1; k++) {
-          System.out.print(" ");
-        }
-        System.out.print(f);
-        for (int k = 0; k < gap2; k++) {
-          System.out.print(" ");
-        }
-      }
-      System.out.println();
-
-      perpiece /= 2;
+    try {
+      new TreeRenderer(OBST.PrintFormat.HORIZONTAL).render(this, System.out);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
     }
   }
 }
@@ -1,10 +1,12 @@
-import java.io.BufferedReader;
 import java.io.BufferedWriter;
-import java.io.FileReader;
+import java.io.File;
+import java.io.FileOutputStream;
 import java.io.FileWriter;
 import java.io.IOException;
-import java.io.PrintStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
 import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
 
 /**
  * Contains various specialized file operations for the Optimal Binary Search Tree assignment.
@@ -22,29 +24,16 @@ public class FileOperations {
   }
 
   /**
-   * Parses a file and stores any ints to an array of ints.
+   * Parses a file and stores any ints to an array of ints. A file whose name ends in ".bin" is
+   * read as a binary key file written by arrToBinaryFile(int[]); any other file is read as text,
+   * one int per line. See KeyFile.
    *
    * @param fileName The name of the file read the int array from.
    * @return The int array from the file.
-   * @throws IOException if file does not exist.
+   * @throws IOException if file does not exist or does not hold ints.
    */
-  //
   public static int[] fileToArr(String fileName) throws IOException {
-
-    BufferedReader reader = new BufferedReader(new FileReader(fileName));
-
-    int lineCount = 0;
-    while (reader.readLine() != null) {
-      lineCount++;
-    }
-
-    int[] arr = new int[lineCount];
-    reader = new BufferedReader(new FileReader(fileName));
-    for (int i = 0; i < arr.length; i++) {
-      arr[i] = Integer.parseInt(reader.readLine());
-    }
-
-    return arr;
+    return KeyFile.read(new File(fileName));
   }
 
   /**
@@ -68,6 +57,18 @@ public class FileOperations {
     writer.close();
   }
 
+  /**
+   * Writes an array of ints to a file in the binary format described by KeyFile. The file can be
+   * read back with fileToArr() if its name ends in ".bin".
+   *
+   * @param arr The int array to write to a file.
+   * @param fileName The name of the file to write the int array to.
+   * @throws IOException if file does not exist.
+   */
+  public static void arrToBinaryFile(int[] arr, String fileName) throws IOException {
+    KeyFile.writeBinary(arr, new File(fileName));
+  }
+
   /**
    * Writes an array of longs to a file.
    *
@@ -89,6 +90,26 @@ public class FileOperations {
     writer.close();
   }
 
+  /**
+   * Writes an array of doubles, such as the probabilities from OBSTDouble.getP(), to a file.
+   *
+   * @param arr The double array to write to a file.
+   * @param fileName The name of the file to write the double array to.
+   * @throws IOException if file does not exist.
+   */
+  public static void arrToFile(double[] arr, String fileName) throws IOException {
+
+    BufferedWriter writer = new BufferedWriter(new FileWriter(fileName));
+    for (int i = 0; i < arr.length; i++) {
+      writer.write(Double.toString(arr[i]));
+      if (i != arr.length - 1) {
+        writer.newLine();
+      }
+    }
+    writer.flush();
+    writer.close();
+  }
+
   /**
    * Writes a 2D array of BigDecimals or Doubles to a file. NOTE: This method skips the first row.
    *
@@ -105,25 +126,9 @@ public class FileOperations {
       throws IOException, IncorrectClassTypeException {
 
     if (arr instanceof Double[][] || arr instanceof BigDecimal[][]) {
-      BufferedWriter writer = new BufferedWriter(new FileWriter(fileName));
-      StringBuilder builder = new StringBuilder();
-
-      for (int row = 1; row < arr.length; row++) {
-        for (int col = 0; col < arr[row].length; col++) {
-          if (arr[row][col] == null) {
-            builder.append(String.format("%" + whitespace + "s", " "));
-          } else {
-            builder.append(String.format("%" + whitespace + "." + precision + "f", arr[row][col]));
-          }
-        }
-        if (row < arr.length - 1) {
-          builder.append("\n");
-        }
+      try (MatrixWriter writer = new MatrixWriter(fileName)) {
+        writer.writeText(arr, whitespace, precision);
       }
-
-      writer.write(builder.toString());
-      writer.flush();
-      writer.close();
     } else {
       throw new IncorrectClassTypeException("Method only accepts Double[][] or BigDecimal[][].");
     }
@@ -140,43 +145,113 @@ public class FileOperations {
   public static void arrToFile(int[][] arr, String fileName, int whitespace)
       throws IOException {
 
-    BufferedWriter writer = new BufferedWriter(new FileWriter(fileName));
-    StringBuilder builder = new StringBuilder();
-
-    for (int row = 1; row < arr.length; row++) {
-      for (int col = 1; col < arr[row].length; col++) {
-        if (arr[row][col] == 0) {
-          builder.append(String.format("%" + whitespace + "s", " "));
-        } else {
-          builder.append(
-              String.format("%" + whitespace + "d", arr[row][col]));
-        }
-      }
-      if (row < arr.length - 1) {
-        builder.append("\n");
-      }
+    try (MatrixWriter writer = new MatrixWriter(fileName)) {
+      writer.writeText(arr, whitespace);
     }
+  }
 
-    writer.write(builder.toString());
-    writer.flush();
-    writer.close();
+  /**
+   * Writes a packed matrix of doubles, such as OBSTDouble.getE() or getW(), to a file in the same
+   * layout as arrToFile(T[][]), without boxing a single cell. Cells outside of the packed triangle
+   * are written as whitespace.
+   *
+   * @param matrix Packed matrix to write to a file.
+   * @param fileName Name of the file to write the matrix to.
+   * @param whitespace Amount of whitespace to add between values
+   * @param precision Precision of printed values
+   * @throws IOException if file does not exist.
+   */
+  public static void arrToFile(TriangularDoubleMatrix matrix, String fileName, int whitespace,
+      int precision) throws IOException {
+
+    try (MatrixWriter writer = new MatrixWriter(fileName)) {
+      writer.writeText(matrix, whitespace, precision);
+    }
+  }
+
+  /**
+   * Writes a packed matrix of ints in the same layout as arrToFile(int[][]). Cells outside of the
+   * packed triangle, and cells containing 0, are written as whitespace.
+   *
+   * @param matrix Packed matrix to write to a file.
+   * @param fileName Name of the file to write the matrix to.
+   * @param whitespace Amount of whitespace to add between values
+   * @throws IOException if file does not exist.
+   */
+  public static void arrToFile(TriangularIntMatrix matrix, String fileName, int whitespace)
+      throws IOException {
+
+    try (MatrixWriter writer = new MatrixWriter(fileName)) {
+      writer.writeText(matrix, whitespace);
+    }
+  }
+
+  /**
+   * Writes a packed matrix of doubles to a file in the binary format described by MatrixFile.
+   * The file can be reopened with MappedDoubleMatrix.open().
+   *
+   * @param matrix Packed matrix to write to a file.
+   * @param fileName Name of the file to write the matrix to.
+   * @throws IOException if file does not exist.
+   */
+  public static void arrToBinaryFile(TriangularDoubleMatrix matrix, String fileName)
+      throws IOException {
+
+    try (MatrixWriter writer = new MatrixWriter(fileName)) {
+      writer.writeBinary(matrix);
+    }
+  }
+
+  /**
+   * Writes a packed matrix of ints to a file in the binary format described by MatrixFile.
+   * The file can be reopened with MappedIntMatrix.open().
+   *
+   * @param matrix Packed matrix to write to a file.
+   * @param fileName Name of the file to write the matrix to.
+   * @throws IOException if file does not exist.
+   */
+  public static void arrToBinaryFile(TriangularIntMatrix matrix, String fileName)
+      throws IOException {
+
+    try (MatrixWriter writer = new MatrixWriter(fileName)) {
+      writer.writeBinary(matrix);
+    }
   }
 
   /**
    * @param obst An optimal binary search tree.
    * @param values Print keys or their indexes (OBST.KEYS or OBST.INDEXES)
-   * @param format Print the tree horizontally or vertically (OBST.HORIZONTAL or OBST.VERTICAL)
+   * @param format Print the tree horizontally or vertically, or as JSON or DOT (OBST.HORIZONTAL,
+   *     OBST.VERTICAL, OBST.JSON or OBST.DOT)
    * @param fileName The name of the file to save the binary search tree to.
    * @throws IOException if file does not exist.
    */
-  public static void treeToFile(OBST obst, OBST.PrintValues values,
+  public static void treeToFile(OBST<?> obst, OBST.PrintValues values,
       OBST.PrintFormat format, String fileName) throws IOException {
 
-    PrintStream fileStream = new PrintStream(fileName);
-    PrintStream old = System.out;
-    System.setOut(fileStream);
-    obst.print(values, format);
-    System.out.flush();
-    System.setOut(old);
+    treeToFile(obst, values, format, fileName, TreeRenderer.UNLIMITED, TreeRenderer.UNLIMITED);
+  }
+
+  /**
+   * Saves the binary search tree to a file, leaving out everything deeper than maxDepth and
+   * everything after the first maxNodes nodes. The tree is written straight to the file as UTF-8;
+   * System.out is left alone.
+   *
+   * @param obst An optimal binary search tree.
+   * @param values Print keys or their indexes (OBST.KEYS or OBST.INDEXES)
+   * @param format Print the tree horizontally or vertically, or as JSON or DOT (OBST.HORIZONTAL,
+   *     OBST.VERTICAL, OBST.JSON or OBST.DOT)
+   * @param fileName The name of the file to save the binary search tree to.
+   * @param maxDepth The deepest level to save. The root is at depth 0.
+   * @param maxNodes The most nodes to save.
+   * @throws IOException if file does not exist.
+   */
+  public static void treeToFile(OBST<?> obst, OBST.PrintValues values,
+      OBST.PrintFormat format, String fileName, int maxDepth, int maxNodes) throws IOException {
+
+    try (Writer writer = new OutputStreamWriter(new FileOutputStream(fileName),
+        StandardCharsets.UTF_8)) {
+      obst.print(values, format, writer, maxDepth, maxNodes);
+    }
   }
 }
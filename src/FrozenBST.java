@@ -0,0 +1,355 @@
+import java.util.Arrays;
+
+/**
+ * A read-only copy of a binary search tree, stored in one flat int array instead of a Node object
+ * per key. Searching a BST follows a pointer to a separately allocated Node at every level, and
+ * each one is likely to be a cache miss. A FrozenBST keeps exactly the same shape (so an optimal
+ * tree stays optimal), but stores each node as NODE_SIZE consecutive ints, and orders the nodes so
+ * that the ones visited together are stored together:
+ *
+ * - EYTZINGER stores the nodes in breadth-first order, like the implicit heap layout. The top
+ *   levels of the tree, which every search passes through, share a few cache lines, and the two
+ *   children of a node are usually next to each other.
+ *
+ * - VAN_EMDE_BOAS splits the tree at half its height, stores the top half first and then each
+ *   subtree hanging below it, and lays out each of those parts the same way. A search then only
+ *   crosses into a new block every few levels, whatever the cache line or page size.
+ *
+ * The tree is not complete in general, so children are stored as explicit positions rather than
+ * calculated from the parent's position.
+ */
+public class FrozenBST {
+
+  /**
+   * The order to store the nodes in.
+   */
+  public enum Layout { EYTZINGER, VAN_EMDE_BOAS }
+
+  // Each node is NODE_SIZE ints: its key, the position of its left and right child (or -1 if
+  // there is none), and the rank of its key, i.e. its 1-based position in sorted order. Four ints
+  // keep every node inside one cache line.
+  private static final int KEY = 0;
+  private static final int LEFT = 1;
+  private static final int RIGHT = 2;
+  private static final int RANK = 3;
+  private static final int NODE_SIZE = 4;
+
+  private final int[] nodes;
+  private final int size;
+  private final Layout layout;
+
+  // The tree being frozen, indexed by the order its nodes were found in. Only used while building.
+  private int[] key;
+  private int[] left;
+  private int[] right;
+  private int laidOut;
+
+  /**
+   * Freezes a binary search tree. The tree is only read, and later changes to it are not seen by
+   * the frozen copy.
+   *
+   * @param tree The tree to freeze.
+   * @param layout The order to store the nodes in.
+   */
+  public FrozenBST(BST tree, Layout layout) {
+    this.layout = layout;
+    size = collect(tree.getRoot());
+
+    int[] order;
+    if (layout == Layout.EYTZINGER) {
+      order = breadthFirstOrder();
+    } else {
+      order = vanEmdeBoasOrder();
+    }
+
+    // The position of each node in the frozen array.
+    int[] position = new int[size];
+    for (int p = 0; p < size; p++) {
+      position[order[p]] = p * NODE_SIZE;
+    }
+
+    int[] rank = ranks();
+    nodes = new int[size * NODE_SIZE];
+    for (int p = 0; p < size; p++) {
+      int node = order[p];
+      int offset = p * NODE_SIZE;
+      nodes[offset + KEY] = key[node];
+      nodes[offset + LEFT] = (left[node] >= 0) ? position[left[node]] : -1;
+      nodes[offset + RIGHT] = (right[node] >= 0) ? position[right[node]] : -1;
+      nodes[offset + RANK] = rank[node];
+    }
+
+    key = null;
+    left = null;
+    right = null;
+  }
+
+  /**
+   * @return The number of keys in the tree.
+   */
+  public int size() {return size;}
+
+  /**
+   * @return The order the nodes are stored in.
+   */
+  public Layout getLayout() {return layout;}
+
+  /**
+   * Searches for a key. The loop has no branch on the direction taken: the comparison only picks
+   * which of the two child slots to read.
+   *
+   * @param data The key to search for.
+   * @return The rank of the key (its 1-based position in sorted order), or 0 if it is not in the
+   *     tree. For a tree built by OBST.constructOBST(), this is the key's index.
+   */
+  public int search(int data) {
+    int[] nodes = this.nodes;
+    int offset = (size > 0) ? 0 : -1;
+
+    while (offset >= 0) {
+      int nodeKey = nodes[offset + KEY];
+      if (nodeKey == data) {
+        return nodes[offset + RANK];
+      }
+      offset = nodes[offset + ((data < nodeKey) ? LEFT : RIGHT)];
+    }
+    return 0;
+  }
+
+  /**
+   * Searches for a key, like search(), but also says where a missing key would have been. A
+   * search for a missing key ends between two adjacent keys, i.e. at a dummy key, and the index
+   * of that dummy key is the rank of the last key the search went right from.
+   *
+   * @param data The key to search for.
+   * @return The rank of the key if it is in the tree; otherwise -(d + 1), where d is the index of
+   *     the dummy key the search ended at (the number of keys less than data).
+   */
+  public int locate(int data) {
+    int[] nodes = this.nodes;
+    int offset = (size > 0) ? 0 : -1;
+    int below = 0;
+
+    while (offset >= 0) {
+      int nodeKey = nodes[offset + KEY];
+      if (nodeKey == data) {
+        return nodes[offset + RANK];
+      }
+
+      // right is 1 if the search goes right and 0 if it goes left. Working it out arithmetically
+      // rather than with a condition keeps the JIT from turning the two uses into a branch.
+      int right = (int) (((long) nodeKey - data) >>> 63);
+      below += (nodes[offset + RANK] - below) & -right;
+      offset = nodes[offset + LEFT + right];
+    }
+    return -below - 1;
+  }
+
+  /**
+   * @param data The key to search for.
+   * @return True if the key is in the tree.
+   */
+  public boolean contains(int data) {
+    return search(data) != 0;
+  }
+
+  /**
+   * Copies the tree into the key, left and right arrays in preorder, without recursing.
+   *
+   * @return The number of nodes.
+   */
+  private int collect(BST.Node root) {
+    key = new int[16];
+    left = new int[16];
+    right = new int[16];
+    if (root == null) {
+      return 0;
+    }
+
+    BST.Node[] stack = new BST.Node[16];
+    int[] stackParent = new int[16];
+    int top = 0;
+    int count = 0;
+
+    // As in OBST.constructOBST(), a positive parent is the parent's left subtree, a negative
+    // parent is its right subtree (both offset by 1 so that node 0 can be a parent), and 0 means
+    // no parent.
+    stack[top] = root;
+    stackParent[top] = 0;
+    top++;
+
+    while (top > 0) {
+      top--;
+      BST.Node node = stack[top];
+      int parent = stackParent[top];
+
+      if (count == key.length) {
+        key = Arrays.copyOf(key, count * 2);
+        left = Arrays.copyOf(left, count * 2);
+        right = Arrays.copyOf(right, count * 2);
+      }
+      key[count] = node.getData();
+      left[count] = -1;
+      right[count] = -1;
+      if (parent > 0) {
+        left[parent - 1] = count;
+      } else if (parent < 0) {
+        right[-parent - 1] = count;
+      }
+
+      if (top + 2 > stack.length) {
+        stack = Arrays.copyOf(stack, stack.length * 2);
+        stackParent = Arrays.copyOf(stackParent, stackParent.length * 2);
+      }
+      if (node.getRight() != null) {
+        stack[top] = node.getRight();
+        stackParent[top] = -(count + 1);
+        top++;
+      }
+      if (node.getLeft() != null) {
+        stack[top] = node.getLeft();
+        stackParent[top] = count + 1;
+        top++;
+      }
+      count++;
+    }
+
+    return count;
+  }
+
+  /**
+   * @return The rank of every node, found by an in-order walk without recursion.
+   */
+  private int[] ranks() {
+    int[] rank = new int[size];
+    int[] stack = new int[size];
+    int top = 0;
+    int next = 1;
+    int node = (size > 0) ? 0 : -1;
+
+    while (node >= 0 || top > 0) {
+      while (node >= 0) {
+        stack[top++] = node;
+        node = left[node];
+      }
+      node = stack[--top];
+      rank[node] = next++;
+      node = right[node];
+    }
+    return rank;
+  }
+
+  /**
+   * @return The nodes in breadth-first order.
+   */
+  private int[] breadthFirstOrder() {
+    int[] order = new int[size];
+    int tail = 0;
+    if (size > 0) {
+      order[tail++] = 0;
+    }
+
+    // The order array doubles as the queue.
+    for (int head = 0; head < tail; head++) {
+      int node = order[head];
+      if (left[node] >= 0) {
+        order[tail++] = left[node];
+      }
+      if (right[node] >= 0) {
+        order[tail++] = right[node];
+      }
+    }
+    return order;
+  }
+
+  /**
+   * @return The nodes in van Emde Boas order.
+   */
+  private int[] vanEmdeBoasOrder() {
+    int[] order = new int[size];
+    if (size > 0) {
+      laidOut = 0;
+      vanEmdeBoas(0, height(), order, new int[size], new int[size]);
+    }
+    return order;
+  }
+
+  /**
+   * Appends the nodes less than levels levels below root to order in van Emde Boas order: the top
+   * half of the levels first, then the subtree below each node at the bottom of the top half, from
+   * left to right. Each call halves the number of levels, so the recursion is only O(log height)
+   * deep, even for a tree that is a single path.
+   *
+   * @param root The root of the part of the tree to lay out.
+   * @param levels The number of levels to lay out.
+   * @param order The order being built.
+   * @param stackNode Scratch space for walking the tree, at least size long.
+   * @param stackDepth Scratch space for walking the tree, at least size long.
+   */
+  private void vanEmdeBoas(int root, int levels, int[] order, int[] stackNode,
+      int[] stackDepth) {
+    if (levels == 1) {
+      order[laidOut++] = root;
+      return;
+    }
+
+    int topLevels = levels / 2;
+    vanEmdeBoas(root, topLevels, order, stackNode, stackDepth);
+
+    // Find the roots of the bottom subtrees, i.e. the nodes exactly topLevels below root, from
+    // left to right.
+    int[] bottoms = new int[16];
+    int bottomCount = 0;
+    int top = 0;
+    stackNode[top] = root;
+    stackDepth[top] = 0;
+    top++;
+    while (top > 0) {
+      top--;
+      int node = stackNode[top];
+      int depth = stackDepth[top];
+
+      if (depth == topLevels) {
+        if (bottomCount == bottoms.length) {
+          bottoms = Arrays.copyOf(bottoms, bottomCount * 2);
+        }
+        bottoms[bottomCount++] = node;
+      } else {
+        if (right[node] >= 0) {
+          stackNode[top] = right[node];
+          stackDepth[top] = depth + 1;
+          top++;
+        }
+        if (left[node] >= 0) {
+          stackNode[top] = left[node];
+          stackDepth[top] = depth + 1;
+          top++;
+        }
+      }
+    }
+
+    for (int b = 0; b < bottomCount; b++) {
+      vanEmdeBoas(bottoms[b], levels - topLevels, order, stackNode, stackDepth);
+    }
+  }
+
+  /**
+   * @return The number of levels in the tree.
+   */
+  private int height() {
+    int[] order = breadthFirstOrder();
+    int[] depth = new int[size];
+    int height = 0;
+
+    for (int node : order) {
+      height = Math.max(height, depth[node] + 1);
+      if (left[node] >= 0) {
+        depth[left[node]] = depth[node] + 1;
+      }
+      if (right[node] >= 0) {
+        depth[right[node]] = depth[node] + 1;
+      }
+    }
+    return height;
+  }
+}
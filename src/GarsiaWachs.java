@@ -0,0 +1,414 @@
+import java.util.Random;
+
+/**
+ * Builds an optimal alphabetic tree with the Garsia-Wachs algorithm. This is the optimal binary
+ * search tree for the special case where every p is 0, so only the dummy keys (the leaves of the
+ * tree) are ever searched for. OBSTDouble uses it automatically in that case.
+ *
+ * The algorithm works in three phases:
+ *
+ * 1. Combine. Working left to right over the leaf weights, find the first pair x[i-1], x[i] with
+ *    x[i-1] <= x[i+1], replace the pair with a single node of weight x[i-1] + x[i], and move that
+ *    node left until it sits just after the nearest weight that is at least as large. Repeat until
+ *    one node is left. This builds a tree with the optimal depth for every leaf, but its leaves are
+ *    no longer in key order.
+ *
+ * 2. Measure the depth of every leaf in that tree.
+ *
+ * 3. Rebuild. Build the unique alphabetic tree (leaves in their original order) that has the same
+ *    leaf depths. Every internal node of this tree sits between two adjacent leaves, which makes it
+ *    the key between those two dummy keys.
+ *
+ * Phases 2 and 3 take O(n) time. Combined nodes can move a long way left in phase 1 (on random
+ * weights the working list grows to about a third of the leaves), so the working list is kept in a
+ * balanced tree rather than an array. Each of the O(n) combinations then takes O(log n) expected
+ * time, for O(n log n) overall.
+ *
+ * Phase 1 only produces leaf depths that phase 3 can turn into a tree if its comparisons are
+ * consistent with its additions. Sums of doubles are rounded, so a combined node can come out a
+ * bit lighter or heavier than a leaf it should tie with, and the depths no longer fit together.
+ * Phase 1 therefore works on the weights as longs, scaled so that they add up to about 2^62 and
+ * rounded once; every sum after that is exact. The cost is still calculated from q. Should phase 3
+ * ever be left with more than one subtree, isComplete() returns false and the caller has to solve
+ * the range some other way.
+ */
+class GarsiaWachs {
+
+  /**
+   * The key index of the left and right child of each key index, or 0 if there is none.
+   */
+  private final int[] left;
+  private final int[] right;
+
+  /**
+   * The key index of the root, or 0 if the tree has no keys.
+   */
+  private final int root;
+
+  /**
+   * The expected cost of searching the tree.
+   */
+  private double cost;
+
+  /**
+   * Whether phase 3 joined every leaf into a single tree.
+   */
+  private boolean complete;
+
+  // The children of each node created in phase 1. Nodes below leaves are the original leaves.
+  private int[] childLeft;
+  private int[] childRight;
+  private int nextNode;
+
+  // Working list for phase 1, kept as a treap ordered by list position so that nodes can be
+  // removed, found and inserted anywhere in the list in O(log n) expected time. Treap node t + 1
+  // holds phase 1 node t; treap node 0 is the empty tree.
+  private long[] weight;
+  private long[] maxWeight;
+  private int[] size;
+  private int[] priority;
+  private int[] treeLeft;
+  private int[] treeRight;
+  private int list;
+
+  // The two trees returned by split().
+  private int splitLeft;
+  private int splitRight;
+
+  /**
+   * Builds the optimal alphabetic tree over the dummy keys first through last, i.e. over the keys
+   * first+1 through last.
+   *
+   * @param q Probabilities of searching for keys that don't exist in the key set.
+   * @param first The index of the lowest dummy key.
+   * @param last The index of the highest dummy key.
+   */
+  GarsiaWachs(double[] q, int first, int last) {
+    left = new int[last + 1];
+    right = new int[last + 1];
+
+    int leaves = last - first + 1;
+    if (leaves == 1) {
+      root = 0;
+      cost = q[first];
+      complete = true;
+      return;
+    }
+
+    int[] depth = leafDepths(combine(q, first, leaves), leaves);
+    root = rebuild(q, first, leaves, depth);
+
+    childLeft = null;
+    childRight = null;
+    weight = null;
+    maxWeight = null;
+    size = null;
+    priority = null;
+    treeLeft = null;
+    treeRight = null;
+  }
+
+  /**
+   * @return The key index of the left child of each key index, or 0 if there is none.
+   */
+  int[] getLeft() {return left;}
+
+  /**
+   * @return The key index of the right child of each key index, or 0 if there is none.
+   */
+  int[] getRight() {return right;}
+
+  /**
+   * @return The key index of the root, or 0 if the tree has no keys.
+   */
+  int getRoot() {return root;}
+
+  /**
+   * @return The expected cost of searching the tree.
+   */
+  double getCost() {return cost;}
+
+  /**
+   * @return True if the tree holds every key. If it is false, the tree must not be used.
+   */
+  boolean isComplete() {return complete;}
+
+  /**
+   * Phase 1: combines the leaves into a single tree. Leaves are appended to the working list one at
+   * a time, and a pair is combined as soon as the node after it shows that it is combinable. This
+   * keeps every earlier triple of the list uncombinable, so after a combination only the triple
+   * that ends at the new node has to be checked again, rather than rescanning the list.
+   *
+   * @return The id of the root node.
+   */
+  private int combine(double[] q, int first, int leaves) {
+    int nodes = 2 * leaves - 1;
+    childLeft = new int[nodes];
+    childRight = new int[nodes];
+    weight = new long[nodes + 1];
+    maxWeight = new long[nodes + 1];
+    size = new int[nodes + 1];
+    priority = new int[nodes + 1];
+    treeLeft = new int[nodes + 1];
+    treeRight = new int[nodes + 1];
+    maxWeight[0] = Long.MIN_VALUE;
+
+    double total = 0;
+    for (int k = 0; k < leaves; k++) {
+      total += q[first + k];
+    }
+    double scale = (total > 0) ? Math.scalb(1.0, 62) / total : 0;
+
+    // Each pending entry is a new node that may still complete a combinable triple with the two
+    // nodes before it, stored as its distance from the end of the list. Combinations only ever
+    // happen to its left, so the distance stays valid while it waits.
+    int[] pending = new int[leaves];
+    Random random = new Random(leaves);
+    nextNode = leaves;
+
+    list = 0;
+    for (int k = 0; k < leaves; k++) {
+      list = merge(list, createNode(k, Math.round(q[first + k] * scale), random));
+
+      // Combining may cascade; once it stops, the end of the list is checked again, since the
+      // list is now shorter. After the last leaf, past the end of the list is treated as
+      // infinitely heavy, so the last pair is always combinable.
+      while (size[list] >= 2) {
+        int count = size[list];
+        int pair;
+        if (count >= 3 && weightAt(count - 3) <= weightAt(count - 1)) {
+          pair = count - 2;
+        } else if (k == leaves - 1) {
+          pair = count - 1;
+        } else {
+          break;
+        }
+
+        int top = 0;
+        int position = combinePair(pair, random);
+        pending[top++] = size[list] - position;
+        while (top > 0) {
+          position = size[list] - pending[top - 1];
+          if (position >= 2 && weightAt(position) >= weightAt(position - 2)) {
+            position = combinePair(position - 1, random);
+            pending[top++] = size[list] - position;
+          } else {
+            top--;
+          }
+        }
+      }
+    }
+
+    return list - 1;
+  }
+
+  /**
+   * Replaces the nodes at positions a-1 and a with a single node and moves it left past every
+   * lighter node, so it sits just after the nearest node that is at least as heavy.
+   *
+   * @return The position the new node was moved to.
+   */
+  private int combinePair(int a, Random random) {
+    split(list, a - 1);
+    int before = splitLeft;
+    split(splitRight, 2);
+    int pair = splitLeft;
+    int after = splitRight;
+
+    // The pair is a treap of two nodes, so one of them is the root and the other is its child.
+    int pairLeft = (treeLeft[pair] != 0) ? treeLeft[pair] : pair;
+    int pairRight = (treeLeft[pair] != 0) ? pair : treeRight[pair];
+
+    int node = nextNode++;
+    childLeft[node] = pairLeft - 1;
+    childRight[node] = pairRight - 1;
+    int combined = createNode(node, weight[pairLeft] + weight[pairRight], random);
+
+    int position = countThroughLastAtLeast(before, weight[combined]);
+    split(before, position);
+    list = merge(merge(splitLeft, combined), merge(splitRight, after));
+    return position;
+  }
+
+  /**
+   * Creates a single node treap holding the given phase 1 node.
+   *
+   * @return The treap node.
+   */
+  private int createNode(int node, long nodeWeight, Random random) {
+    int t = node + 1;
+    weight[t] = nodeWeight;
+    maxWeight[t] = nodeWeight;
+    size[t] = 1;
+    priority[t] = random.nextInt();
+    treeLeft[t] = 0;
+    treeRight[t] = 0;
+    return t;
+  }
+
+  /**
+   * @return The weight of the node at the given position of the working list.
+   */
+  private long weightAt(int position) {
+    int t = list;
+    while (true) {
+      int leftSize = size[treeLeft[t]];
+      if (position < leftSize) {
+        t = treeLeft[t];
+      } else if (position == leftSize) {
+        return weight[t];
+      } else {
+        position -= leftSize + 1;
+        t = treeRight[t];
+      }
+    }
+  }
+
+  /**
+   * @return The number of nodes of treap t up to and including the last one whose weight is at
+   *     least the given weight, or 0 if there is none.
+   */
+  private int countThroughLastAtLeast(int t, long atLeast) {
+    int count = 0;
+    while (t != 0) {
+      if (maxWeight[treeRight[t]] >= atLeast) {
+        count += size[treeLeft[t]] + 1;
+        t = treeRight[t];
+      } else if (weight[t] >= atLeast) {
+        return count + size[treeLeft[t]] + 1;
+      } else {
+        t = treeLeft[t];
+      }
+    }
+    return 0;
+  }
+
+  /**
+   * Splits treap t into its first count nodes (splitLeft) and the rest (splitRight). The recursion
+   * is as deep as the treap, which is O(log n) deep in expectation.
+   */
+  private void split(int t, int count) {
+    if (t == 0) {
+      splitLeft = 0;
+      splitRight = 0;
+    } else if (size[treeLeft[t]] < count) {
+      split(treeRight[t], count - size[treeLeft[t]] - 1);
+      treeRight[t] = splitLeft;
+      update(t);
+      splitLeft = t;
+    } else {
+      split(treeLeft[t], count);
+      treeLeft[t] = splitRight;
+      update(t);
+      splitRight = t;
+    }
+  }
+
+  /**
+   * Joins two treaps, with every node of a placed before every node of b.
+   *
+   * @return The joined treap.
+   */
+  private int merge(int a, int b) {
+    if (a == 0) {
+      return b;
+    }
+    if (b == 0) {
+      return a;
+    }
+    if (priority[a] > priority[b]) {
+      treeRight[a] = merge(treeRight[a], b);
+      update(a);
+      return a;
+    }
+    treeLeft[b] = merge(a, treeLeft[b]);
+    update(b);
+    return b;
+  }
+
+  /**
+   * Recalculates the size and heaviest weight of treap node t from its children.
+   */
+  private void update(int t) {
+    int l = treeLeft[t];
+    int r = treeRight[t];
+    size[t] = size[l] + size[r] + 1;
+    maxWeight[t] = Math.max(weight[t], Math.max(maxWeight[l], maxWeight[r]));
+  }
+
+  /**
+   * Phase 2: measures the depth of every leaf in the tree built by phase 1.
+   */
+  private int[] leafDepths(int treeRoot, int leaves) {
+    int[] depth = new int[leaves];
+    int[] stackNode = new int[leaves];
+    int[] stackDepth = new int[leaves];
+    int top = 0;
+
+    stackNode[top] = treeRoot;
+    stackDepth[top] = 0;
+    top++;
+
+    while (top > 0) {
+      top--;
+      int node = stackNode[top];
+      int d = stackDepth[top];
+
+      if (node < leaves) {
+        depth[node] = d;
+      } else {
+        stackNode[top] = childLeft[node];
+        stackDepth[top] = d + 1;
+        top++;
+        stackNode[top] = childRight[node];
+        stackDepth[top] = d + 1;
+        top++;
+      }
+    }
+
+    return depth;
+  }
+
+  /**
+   * Phase 3: builds the alphabetic tree with the given leaf depths and calculates its cost. Leaves
+   * are pushed in order; whenever the top two entries of the stack are at the same depth, they are
+   * siblings, so they are replaced by their parent one level up. If the depths are right, a single
+   * entry is left at depth 0 once every leaf has been pushed; complete records whether it was.
+   *
+   * @return The key index of the root.
+   */
+  private int rebuild(double[] q, int first, int leaves, int[] depth) {
+    int[] stackDepth = new int[leaves];
+    int[] stackFirstLeaf = new int[leaves];
+    int[] stackKey = new int[leaves];
+    int top = 0;
+
+    cost = 0;
+    for (int k = 0; k < leaves; k++) {
+
+      // A dummy key at depth d takes d + 1 comparisons to reach.
+      cost += q[first + k] * (depth[k] + 1);
+
+      stackDepth[top] = depth[k];
+      stackFirstLeaf[top] = first + k;
+      stackKey[top] = 0;
+      top++;
+
+      while (top >= 2 && stackDepth[top - 1] == stackDepth[top - 2]) {
+
+        // The parent of two sibling subtrees is the key between the last dummy key of the left
+        // subtree and the first dummy key of the right subtree.
+        int key = stackFirstLeaf[top - 1];
+        left[key] = stackKey[top - 2];
+        right[key] = stackKey[top - 1];
+
+        top--;
+        stackDepth[top - 1]--;
+        stackKey[top - 1] = key;
+      }
+    }
+
+    complete = top == 1 && stackDepth[0] == 0;
+    return stackKey[0];
+  }
+}
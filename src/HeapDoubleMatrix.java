@@ -0,0 +1,42 @@
+/**
+ * A packed matrix of doubles, backed by one flat double[] on the heap. A Java array can hold at
+ * most about 2^31 cells, which limits this matrix to roughly 65,000 keys; use MappedDoubleMatrix
+ * beyond that.
+ */
+public class HeapDoubleMatrix extends TriangularDoubleMatrix {
+
+  /**
+   * The packed cells of the matrix.
+   */
+  final double[] data;
+
+  /**
+   * Allocates a matrix for n keys. Every cell starts at 0.
+   *
+   * @param n Number of keys.
+   */
+  public HeapDoubleMatrix(int n) {
+    super(n);
+    data = new double[arraySize(n)];
+  }
+
+  /**
+   * @param i The lower bound of the range.
+   * @param j The upper bound of the range.
+   * @return The value stored in [i][j].
+   */
+  @Override
+  public double get(int i, int j) {
+    return data[(int) (rowStart[i] + j)];
+  }
+
+  /**
+   * @param i The lower bound of the range.
+   * @param j The upper bound of the range.
+   * @param value The value to store in [i][j].
+   */
+  @Override
+  public void set(int i, int j, double value) {
+    data[(int) (rowStart[i] + j)] = value;
+  }
+}
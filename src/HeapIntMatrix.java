@@ -0,0 +1,42 @@
+/**
+ * A packed matrix of ints, backed by one flat int[] on the heap. A Java array can hold at most
+ * about 2^31 cells, which limits this matrix to roughly 65,000 keys; use MappedIntMatrix beyond
+ * that.
+ */
+public class HeapIntMatrix extends TriangularIntMatrix {
+
+  /**
+   * The packed cells of the matrix.
+   */
+  final int[] data;
+
+  /**
+   * Allocates a matrix for n keys. Every cell starts at 0.
+   *
+   * @param n Number of keys.
+   */
+  public HeapIntMatrix(int n) {
+    super(n);
+    data = new int[arraySize(n)];
+  }
+
+  /**
+   * @param i The lower bound of the range.
+   * @param j The upper bound of the range.
+   * @return The value stored in [i][j].
+   */
+  @Override
+  public int get(int i, int j) {
+    return data[(int) (rowStart[i] + j)];
+  }
+
+  /**
+   * @param i The lower bound of the range.
+   * @param j The upper bound of the range.
+   * @param value The value to store in [i][j].
+   */
+  @Override
+  public void set(int i, int j, int value) {
+    data[(int) (rowStart[i] + j)] = value;
+  }
+}
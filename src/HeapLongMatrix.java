@@ -0,0 +1,41 @@
+/**
+ * A packed matrix of longs, backed by one flat long[] on the heap. A Java array can hold at most
+ * about 2^31 cells, which limits this matrix to roughly 65,000 keys.
+ */
+public class HeapLongMatrix extends TriangularLongMatrix {
+
+  /**
+   * The packed cells of the matrix.
+   */
+  final long[] data;
+
+  /**
+   * Allocates a matrix for n keys. Every cell starts at 0.
+   *
+   * @param n Number of keys.
+   */
+  public HeapLongMatrix(int n) {
+    super(n);
+    data = new long[arraySize(n)];
+  }
+
+  /**
+   * @param i The lower bound of the range.
+   * @param j The upper bound of the range.
+   * @return The value stored in [i][j].
+   */
+  @Override
+  public long get(int i, int j) {
+    return data[(int) (rowStart[i] + j)];
+  }
+
+  /**
+   * @param i The lower bound of the range.
+   * @param j The upper bound of the range.
+   * @param value The value to store in [i][j].
+   */
+  @Override
+  public void set(int i, int j, long value) {
+    data[(int) (rowStart[i] + j)] = value;
+  }
+}
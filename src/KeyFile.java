@@ -0,0 +1,370 @@
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Reads and writes key files. A key file is either text, one int per line as written by
+ * FileOperations.arrToFile(int[]), or binary, which holds the same keys with nothing to parse.
+ * Binary key files are named *.keys.bin and start with a fixed-size, little-endian header:
+ *
+ *   offset  0: int   magic number, the bytes "KEYS"
+ *   offset  4: int   format version
+ *   offset  8: int   the number of keys
+ *   offset 12: 4 reserved bytes, always 0
+ *
+ * The keys follow the header, each stored as a little-endian int.
+ *
+ * A text file is memory-mapped rather than read through a Reader, so no String is created for any
+ * line. Large files are cut into chunks at line boundaries, and the chunks are parsed on the
+ * common ForkJoinPool: each chunk first counts its keys, which tells every chunk where its keys
+ * start in the array, then parses them into place with a hand-written parser.
+ */
+public class KeyFile {
+
+  /**
+   * The bytes "KEYS" read as a little-endian int.
+   */
+  public static final int MAGIC = 0x5359454B;
+
+  /**
+   * Version of the binary format written by this class.
+   */
+  public static final int VERSION = 1;
+
+  /**
+   * Size of the binary header in bytes.
+   */
+  public static final int HEADER_SIZE = 16;
+
+  /**
+   * The file name extension of a binary key file.
+   */
+  public static final String BINARY_EXTENSION = ".bin";
+
+  /**
+   * Text files smaller than this are parsed in a single chunk on the calling thread.
+   */
+  private static final long MIN_CHUNK_SIZE = 1 << 20;
+
+  /**
+   * The largest chunk of a text file mapped at once.
+   */
+  private static final long MAX_CHUNK_SIZE = 1 << 28;
+
+  /**
+   * Reads a key file, binary if its name ends in BINARY_EXTENSION and text otherwise.
+   *
+   * @param file The file to read.
+   * @return The keys in the file, in order.
+   * @throws IOException if the file cannot be read or does not hold keys.
+   */
+  public static int[] read(File file) throws IOException {
+    if (file.getName().endsWith(BINARY_EXTENSION)) {
+      return readBinary(file);
+    }
+    return readText(file);
+  }
+
+  /**
+   * Reads a binary key file.
+   *
+   * @param file The file to read.
+   * @return The keys in the file, in order.
+   * @throws IOException if the file cannot be read or is not a binary key file.
+   */
+  public static int[] readBinary(File file) throws IOException {
+    try (RandomAccessFile in = new RandomAccessFile(file, "r")) {
+      FileChannel channel = in.getChannel();
+      long size = channel.size();
+      if (size < HEADER_SIZE) {
+        throw new IOException(file + " is too short to be a key file.");
+      }
+
+      MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+      buffer.order(ByteOrder.LITTLE_ENDIAN);
+      if (buffer.getInt(0) != MAGIC) {
+        throw new IOException(file + " is not a key file.");
+      }
+      if (buffer.getInt(4) != VERSION) {
+        throw new IOException("Unsupported key file version " + buffer.getInt(4) + ".");
+      }
+      int count = buffer.getInt(8);
+      if (count < 0 || size != HEADER_SIZE + (long) count * Integer.BYTES) {
+        throw new IOException(file + " should hold " + count + " keys, but is " + size
+            + " bytes long.");
+      }
+
+      int[] keys = new int[count];
+      buffer.position(HEADER_SIZE);
+      buffer.asIntBuffer().get(keys);
+      return keys;
+    }
+  }
+
+  /**
+   * Writes keys to a binary key file.
+   *
+   * @param keys The keys to write.
+   * @param file The file to write.
+   * @throws IOException if the file cannot be written.
+   */
+  public static void writeBinary(int[] keys, File file) throws IOException {
+    try (RandomAccessFile out = new RandomAccessFile(file, "rw")) {
+      long size = HEADER_SIZE + (long) keys.length * Integer.BYTES;
+      out.setLength(size);
+
+      MappedByteBuffer buffer = out.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, size);
+      buffer.order(ByteOrder.LITTLE_ENDIAN);
+      buffer.putInt(MAGIC);
+      buffer.putInt(VERSION);
+      buffer.putInt(keys.length);
+      buffer.putInt(0);
+      buffer.asIntBuffer().put(keys);
+      buffer.force();
+    }
+  }
+
+  /**
+   * Reads a text key file, one int per line. Lines may end in "\n" or "\r\n", and blank lines are
+   * skipped.
+   *
+   * @param file The file to read.
+   * @return The keys in the file, in order.
+   * @throws IOException if the file cannot be read or a line is not an int.
+   */
+  public static int[] readText(File file) throws IOException {
+    try (RandomAccessFile in = new RandomAccessFile(file, "r")) {
+      FileChannel channel = in.getChannel();
+      TextChunk[] chunks = split(channel);
+
+      if (chunks.length == 1) {
+        chunks[0].count();
+      } else {
+        RecursiveAction.invokeAll(counters(chunks));
+      }
+
+      int total = 0;
+      for (TextChunk chunk : chunks) {
+        chunk.first = total;
+        if (total + (long) chunk.keys > Integer.MAX_VALUE) {
+          throw new IOException(file + " holds more keys than an array can.");
+        }
+        total += chunk.keys;
+      }
+
+      int[] keys = new int[total];
+      for (TextChunk chunk : chunks) {
+        chunk.target = keys;
+      }
+      if (chunks.length == 1) {
+        chunks[0].parse();
+      } else {
+        RecursiveAction.invokeAll(parsers(chunks));
+      }
+
+      for (TextChunk chunk : chunks) {
+        if (chunk.error != null) {
+          throw new IOException(file + ": " + chunk.error);
+        }
+      }
+      return keys;
+    }
+  }
+
+  /**
+   * Cuts a text file into chunks that each end just after a newline (except the last), and maps
+   * each chunk.
+   */
+  private static TextChunk[] split(FileChannel channel) throws IOException {
+    long size = channel.size();
+    int parallelism = Runtime.getRuntime().availableProcessors();
+    long target = Math.max(MIN_CHUNK_SIZE, (size + parallelism - 1) / parallelism);
+    target = Math.min(target, MAX_CHUNK_SIZE);
+    int count = (int) Math.max(1, (size + target - 1) / target);
+
+    TextChunk[] chunks = new TextChunk[count];
+    int made = 0;
+    long start = 0;
+    while (start < size || made == 0) {
+      long end = Math.min(size, start + target);
+
+      // Move the end forward to just after the next newline, so that no line is split.
+      if (end < size) {
+        ByteBuffer one = ByteBuffer.allocate(1);
+        while (end < size) {
+          one.clear();
+          channel.read(one, end);
+          end++;
+          if (one.get(0) == '\n') {
+            break;
+          }
+        }
+      }
+
+      if (made == chunks.length) {
+        chunks = Arrays.copyOf(chunks, made * 2);
+      }
+      chunks[made++] = new TextChunk(channel.map(FileChannel.MapMode.READ_ONLY, start,
+          end - start));
+      start = end;
+    }
+    return Arrays.copyOf(chunks, made);
+  }
+
+  private static RecursiveAction[] counters(TextChunk[] chunks) {
+    RecursiveAction[] tasks = new RecursiveAction[chunks.length];
+    for (int c = 0; c < chunks.length; c++) {
+      TextChunk chunk = chunks[c];
+      tasks[c] = new RecursiveAction() {
+        @Override
+        protected void compute() {
+          chunk.count();
+        }
+      };
+    }
+    return tasks;
+  }
+
+  private static RecursiveAction[] parsers(TextChunk[] chunks) {
+    RecursiveAction[] tasks = new RecursiveAction[chunks.length];
+    for (int c = 0; c < chunks.length; c++) {
+      TextChunk chunk = chunks[c];
+      tasks[c] = new RecursiveAction() {
+        @Override
+        protected void compute() {
+          chunk.parse();
+        }
+      };
+    }
+    return tasks;
+  }
+
+  /**
+   * A piece of a text key file made of whole lines.
+   */
+  private static class TextChunk {
+
+    private final MappedByteBuffer bytes;
+
+    /**
+     * Number of keys in the chunk, and the position of the first of them in the whole file.
+     */
+    private int keys;
+    private int first;
+
+    /**
+     * The array the keys are parsed into.
+     */
+    private int[] target;
+
+    /**
+     * What is wrong with the chunk, if parsing failed.
+     */
+    private String error;
+
+    TextChunk(MappedByteBuffer bytes) {
+      this.bytes = bytes;
+    }
+
+    /**
+     * Counts the lines that hold anything other than "\r".
+     */
+    void count() {
+      MappedByteBuffer bytes = this.bytes;
+      int limit = bytes.limit();
+      int lines = 0;
+      boolean inLine = false;
+      for (int k = 0; k < limit; k++) {
+        byte b = bytes.get(k);
+        if (b == '\n') {
+          if (inLine) {
+            lines++;
+          }
+          inLine = false;
+        } else if (b != '\r') {
+          inLine = true;
+        }
+      }
+      keys = inLine ? lines + 1 : lines;
+    }
+
+    /**
+     * Parses the lines counted by count() into target, starting at first. Each line is read as
+     * Integer.parseInt() would read it: an optional '-' or '+' followed by digits, which may have
+     * any number of leading zeros.
+     */
+    void parse() {
+      MappedByteBuffer bytes = this.bytes;
+      int[] target = this.target;
+      int limit = bytes.limit();
+      int next = first;
+      long value = 0;
+      int digits = 0;
+      int significantDigits = 0;
+      boolean negative = false;
+      boolean inLine = false;
+
+      for (int k = 0; k <= limit; k++) {
+        byte b = (k < limit) ? bytes.get(k) : (byte) '\n';
+        if (b >= '0' && b <= '9') {
+
+          // Ten digits after any leading zeros is the most an int can have, and keeps value well
+          // within a long.
+          digits++;
+          if ((value != 0 || b != '0') && ++significantDigits > 10) {
+            error = "\"" + line(k) + "\" is not an int.";
+            return;
+          }
+          value = value * 10 + (b - '0');
+          inLine = true;
+        } else if (b == '\n') {
+          if (inLine) {
+            long key = negative ? -value : value;
+            if (digits == 0 || key < Integer.MIN_VALUE || key > Integer.MAX_VALUE) {
+              error = "\"" + line(k - 1) + "\" is not an int.";
+              return;
+            }
+            target[next++] = (int) key;
+          }
+          value = 0;
+          digits = 0;
+          significantDigits = 0;
+          negative = false;
+          inLine = false;
+        } else if ((b == '-' || b == '+') && !inLine) {
+          negative = b == '-';
+          inLine = true;
+        } else if (b != '\r') {
+          error = "\"" + line(k) + "\" is not an int.";
+          return;
+        }
+      }
+    }
+
+    /**
+     * @return The line of the chunk that contains position k, for error messages.
+     */
+    private String line(int k) {
+      int start = Math.min(k, bytes.limit() - 1);
+      while (start > 0 && bytes.get(start - 1) != '\n') {
+        start--;
+      }
+      int end = start;
+      while (end < bytes.limit() && bytes.get(end) != '\n' && bytes.get(end) != '\r') {
+        end++;
+      }
+      byte[] text = new byte[end - start];
+      for (int i = 0; i < text.length; i++) {
+        text[i] = bytes.get(start + i);
+      }
+      return new String(text, StandardCharsets.US_ASCII);
+    }
+  }
+}
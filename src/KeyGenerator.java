@@ -0,0 +1,351 @@
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Generates n distinct random keys in ascending order, reproducibly from a seed, and on several
+ * threads, so that key sets of many millions of keys take seconds to build.
+ *
+ * Random keys collide: 100 million keys drawn from Main's key range repeat several million
+ * values, and BST.add() drops every repeat, so the tree ends up smaller than n. Keys are therefore
+ * generated in rounds. Each round draws as many keys as are still missing, sorts them with
+ * MergeSort's radix sort, drops repeats, and merges them into the keys kept so far, dropping any
+ * key already kept. The rounds stop once there are exactly n keys; every round draws far fewer
+ * keys than the one before.
+ *
+ * As in ProbabilityGeneratorParallel, the keys of a round are drawn in blocks of BLOCK_SIZE, each
+ * from its own SplittableRandom, split off the seed's generator in block order before any thread
+ * starts, so the keys depend only on the seed, never on the number of threads.
+ */
+public class KeyGenerator {
+
+  /**
+   * Number of keys drawn from each random generator, and the smallest piece of work a thread is
+   * given.
+   */
+  public static final int BLOCK_SIZE = 1 << 16;
+
+  /**
+   * Number of clusters the CLUSTERED distribution draws keys around.
+   */
+  public static final int CLUSTERS = 64;
+
+  /**
+   * How the keys are spread over the key range.
+   *
+   * UNIFORM: every key in the range is equally likely.
+   * NORMAL: keys bunch up in the middle of the range, with a standard deviation of a sixth of it.
+   * EXPONENTIAL: keys bunch up at the low end of the range, with a mean of an eighth of it.
+   * CLUSTERED: keys fall in CLUSTERS evenly spaced clusters, which together cover half the range.
+   */
+  public enum Distribution { UNIFORM, NORMAL, EXPONENTIAL, CLUSTERED }
+
+  private final int n;
+  private final int low;
+  private final int high;
+  private final Distribution distribution;
+  private final long seed;
+  private final int parallelism;
+
+  /**
+   * The keys, in ascending order.
+   */
+  private final int[] keys;
+
+  /**
+   * Number of rounds it took to draw n distinct keys.
+   */
+  private int rounds;
+
+  /**
+   * The keys drawn in the round that is running, and the random generator of each of its blocks.
+   */
+  private int[] batch;
+  private SplittableRandom[] randoms;
+
+  /**
+   * Uses one thread per available processor.
+   *
+   * @param n Number of keys to generate.
+   * @param low The lowest key that may be generated.
+   * @param high The highest key that may be generated.
+   * @param distribution How the keys are spread from low to high.
+   * @param seed The seed the keys are generated from. The same seed always gives the same keys.
+   */
+  public KeyGenerator(int n, int low, int high, Distribution distribution, long seed) {
+    this(n, low, high, distribution, seed, Runtime.getRuntime().availableProcessors());
+  }
+
+  /**
+   * @param n Number of keys to generate.
+   * @param low The lowest key that may be generated.
+   * @param high The highest key that may be generated.
+   * @param distribution How the keys are spread from low to high.
+   * @param seed The seed the keys are generated from. The same seed always gives the same keys,
+   *     whatever the parallelism.
+   * @param parallelism Number of threads to draw the keys on.
+   */
+  public KeyGenerator(int n, int low, int high, Distribution distribution, long seed,
+      int parallelism) {
+    if (n < 0) {
+      throw new IllegalArgumentException("n must not be negative.");
+    }
+    if (low > high) {
+      throw new IllegalArgumentException("low must not be greater than high.");
+    }
+    if (parallelism < 1) {
+      throw new IllegalArgumentException("parallelism must be at least 1.");
+    }
+    if (n > possibleKeys(low, high, distribution)) {
+      throw new IllegalArgumentException("The " + distribution + " distribution cannot give " + n
+          + " distinct keys from " + low + " to " + high + ".");
+    }
+    this.n = n;
+    this.low = low;
+    this.high = high;
+    this.distribution = distribution;
+    this.seed = seed;
+    this.parallelism = parallelism;
+
+    keys = new int[n];
+    generateKeys();
+  }
+
+  /**
+   * @return The keys, distinct and in ascending order.
+   */
+  public int[] getKeys() {return keys;}
+
+  /**
+   * @return The seed the keys were generated from.
+   */
+  public long getSeed() {return seed;}
+
+  /**
+   * @return How the keys are spread over the key range.
+   */
+  public Distribution getDistribution() {return distribution;}
+
+  /**
+   * @return Number of rounds it took to draw n distinct keys.
+   */
+  public int getRounds() {return rounds;}
+
+  /**
+   * @return The number of distinct keys a distribution can give from low to high.
+   */
+  private static long possibleKeys(int low, int high, Distribution distribution) {
+    long range = (long) high - low + 1;
+    if (distribution == Distribution.CLUSTERED) {
+
+      // A range too short to hold CLUSTERS clusters piles every cluster onto low.
+      return (range < CLUSTERS) ? 1 : CLUSTERS * clusterWidth(range);
+    }
+    return range;
+  }
+
+  /**
+   * @return Number of keys in each cluster of the CLUSTERED distribution.
+   */
+  private static long clusterWidth(long range) {
+    return Math.max(1, range / (2 * CLUSTERS));
+  }
+
+  /**
+   * Draws rounds of keys until there are n distinct ones.
+   */
+  private void generateKeys() {
+    SplittableRandom random = new SplittableRandom(seed);
+    int[] scratch = new int[n];
+    batch = new int[n];
+    int kept = 0;
+
+    while (kept < n) {
+      int missing = n - kept;
+      int blocks = (missing + BLOCK_SIZE - 1) / BLOCK_SIZE;
+      randoms = new SplittableRandom[blocks];
+      for (int b = 0; b < blocks; b++) {
+        randoms[b] = random.split();
+      }
+      drawBlocks(missing);
+
+      MergeSort.radixSortInPlace(batch, scratch, missing, low, high);
+      int drawn = dropRepeats(batch, missing);
+      kept = mergeInto(kept, drawn);
+      rounds++;
+    }
+
+    batch = null;
+    randoms = null;
+  }
+
+  /**
+   * Draws the keys of every block of batch[0..count), on the calling thread if there is only one
+   * block or one thread.
+   */
+  private void drawBlocks(int count) {
+    int blocks = randoms.length;
+    if (parallelism == 1 || blocks == 1) {
+      drawBlocks(0, blocks - 1, count);
+      return;
+    }
+
+    ForkJoinPool pool = new ForkJoinPool(parallelism);
+    try {
+      pool.invoke(new BlockTask(0, blocks - 1, count));
+    } finally {
+      pool.shutdown();
+    }
+  }
+
+  /**
+   * Draws the keys of the blocks [lowBlock..highBlock] of batch[0..count).
+   */
+  private void drawBlocks(int lowBlock, int highBlock, int count) {
+    for (int b = lowBlock; b <= highBlock; b++) {
+      SplittableRandom random = randoms[b];
+      int start = b * BLOCK_SIZE;
+      int end = (int) Math.min((long) start + BLOCK_SIZE, count);
+      for (int k = start; k < end; k++) {
+        batch[k] = draw(random);
+      }
+    }
+  }
+
+  /**
+   * @return A key from low to high, drawn from the distribution.
+   */
+  private int draw(SplittableRandom random) {
+    long range = (long) high - low + 1;
+    switch (distribution) {
+      case NORMAL: {
+        double mean = low + range / 2.0;
+        double deviation = range / 6.0;
+
+        // Draw again whenever the key falls outside of the range, which is 0.3% of the time.
+        while (true) {
+          double key = Math.floor(mean + gaussian(random) * deviation);
+          if (key >= low && key <= high) {
+            return (int) key;
+          }
+        }
+      }
+      case EXPONENTIAL: {
+        double mean = range / 8.0;
+
+        // Draw again whenever the key falls past the end of the range, which is 0.03% of the time.
+        while (true) {
+          double offset = Math.floor(-Math.log(1 - random.nextDouble()) * mean);
+          if (offset < range) {
+            return (int) (low + (long) offset);
+          }
+        }
+      }
+      case CLUSTERED: {
+        long width = clusterWidth(range);
+        long spacing = range / CLUSTERS;
+        int cluster = random.nextInt(CLUSTERS);
+        long clusterLow = low + cluster * spacing + (spacing - width) / 2;
+        return (int) (clusterLow + random.nextLong(width));
+      }
+      default:
+        return (int) (low + random.nextLong(range));
+    }
+  }
+
+  /**
+   * @return A normally distributed value with mean 0 and standard deviation 1, drawn with the
+   *     polar method (SplittableRandom has no nextGaussian() before Java 17).
+   */
+  private static double gaussian(SplittableRandom random) {
+    double x;
+    double y;
+    double s;
+    do {
+      x = 2 * random.nextDouble() - 1;
+      y = 2 * random.nextDouble() - 1;
+      s = x * x + y * y;
+    } while (s >= 1 || s == 0);
+    return x * Math.sqrt(-2 * Math.log(s) / s);
+  }
+
+  /**
+   * Drops every repeat from the sorted keys arr[0..count), moving the rest to the front.
+   *
+   * @return Number of distinct keys left.
+   */
+  private static int dropRepeats(int[] arr, int count) {
+    if (count == 0) {
+      return 0;
+    }
+    int distinct = 1;
+    for (int k = 1; k < count; k++) {
+      if (arr[k] != arr[distinct - 1]) {
+        arr[distinct++] = arr[k];
+      }
+    }
+    return distinct;
+  }
+
+  /**
+   * Merges the distinct, sorted keys batch[0..drawn) into the keys kept so far, keys[0..kept),
+   * dropping every key that was already kept. There are never more than n - kept keys in the
+   * batch, so they fit in keys: the merge runs from the back, where the free space is, and never
+   * overwrites a kept key it has not read yet. Repeats leave a gap at the front, which is closed
+   * at the end.
+   *
+   * @return Number of keys kept after the merge.
+   */
+  private int mergeInto(int kept, int drawn) {
+    int i = kept - 1;
+    int j = drawn - 1;
+    int w = kept + drawn - 1;
+    while (j >= 0) {
+      if (i >= 0 && keys[i] > batch[j]) {
+        keys[w--] = keys[i--];
+      } else {
+        if (i >= 0 && keys[i] == batch[j]) {
+          i--;
+        }
+        keys[w--] = batch[j--];
+      }
+    }
+
+    // The rest of the kept keys are already in order, but move down with the gap.
+    int start = w - i;
+    System.arraycopy(keys, 0, keys, start, i + 1);
+    int total = kept + drawn - start;
+    if (start > 0) {
+      System.arraycopy(keys, start, keys, 0, total);
+    }
+    return total;
+  }
+
+  /**
+   * Draws the keys of a range of blocks, splitting itself in half until it is a single block.
+   */
+  private class BlockTask extends RecursiveAction {
+
+    private static final long serialVersionUID = 1L;
+
+    private final int lowBlock;
+    private final int highBlock;
+    private final int count;
+
+    BlockTask(int lowBlock, int highBlock, int count) {
+      this.lowBlock = lowBlock;
+      this.highBlock = highBlock;
+      this.count = count;
+    }
+
+    @Override
+    protected void compute() {
+      if (lowBlock == highBlock) {
+        drawBlocks(lowBlock, highBlock, count);
+      } else {
+        int mid = (lowBlock + highBlock) >>> 1;
+        invokeAll(new BlockTask(lowBlock, mid, count), new BlockTask(mid + 1, highBlock, count));
+      }
+    }
+  }
+}
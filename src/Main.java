@@ -3,8 +3,8 @@
 //
 //
 
+import java.io.File;
 import java.io.IOException;
-import java.util.Random;
 
 /**
  * The driver class for the Optimal Binary Search Tree assignment.
@@ -12,11 +12,18 @@ import java.util.Random;
 public class Main {
 
   private static int ARG_SORT_METHOD = 0; // The argument element that specifies sorting method.
+  private static int ARG_ENGINE = 1;      // The argument element that specifies the OBST engine.
+  private static int ARG_BACKEND = 2;     // The argument element that specifies matrix storage.
+  private static int ARG_DISTRIBUTION = 1; // The argument element that specifies key spread.
+  private static int ARG_SEED = 2;        // The argument element that specifies the key seed.
   private static int LOW = 100000001;     // The low range of a key value.
   private static int HIGH = 999999999;    // The high range of a key value.
   private static int MIN_KEYS = 10;       // The minimum number of keys in a keyset.
   private static int KEY_MULTIPLIER = 10; // The multiple for each keyset.
   private static int NUM_SETS = 5;        // The number of keysets to iterate over.
+  private static long SEED = 42;          // The default seed for keys and probabilities.
+  private static long CHECKPOINT_INTERVAL = 60000; // Milliseconds between saves of OBST progress.
+  private static int HORIZONTAL_DEPTH = 7; // The deepest level saved in horizontal tree files.
 
   public static void main(String[] args) {
 
@@ -45,13 +52,13 @@ public class Main {
           // Handle each command line argument.
           switch (args[ARG_SORT_METHOD]) {
             case "generate":
-              arr = generateKeys(n, LOW, HIGH);
-              arr = MergeSort.mergeSort(arr);
+              arr = generateKeys(args, n);
               path = "data/keys/ascending";
               FileOperations.arrToFile(arr, n + ".keys.txt");
+              FileOperations.arrToBinaryFile(arr, n + ".keys.bin");
               break;
             case "obst":
-              arr = FileOperations.fileToArr("data/keys/ascending/" + n + ".keys.txt");
+              arr = FileOperations.fileToArr(keyFile(n));
               path = "data/results";
               break;
             default:
@@ -67,12 +74,21 @@ public class Main {
           // If the user is not attempting to generate new keys, we want to create the OBST.
           if (args[ARG_SORT_METHOD].equals("obst")) {
 
-            // Generate the probabilities for the real keys and dummy keys.
-            ProbabilityGeneratorDouble probabilities = new ProbabilityGeneratorDouble(arr.length);
+            // Generate the probabilities for the real keys and dummy keys. They come from a fixed
+            // seed, so a run that was stopped can resume from its checkpoint.
+            ProbabilityGeneratorParallel probabilities =
+                new ProbabilityGeneratorParallel(arr.length, SEED);
 
             // Run the OBST algorithm on the probabilities and calculate the time it takes to do so.
             startTime = System.currentTimeMillis();
-            obst = new OBSTDouble(arr, probabilities.p, probabilities.q, n);
+            obst = createOBST(args, arr, probabilities.getP(), probabilities.getQ(), n);
+            // The "approx" engine calculates no matrices, so it ignores this.
+            boolean mapped = args.length > ARG_BACKEND && args[ARG_BACKEND].equals("mapped");
+            if (mapped) {
+              obst.useMappedMatrices(new File(path));
+            }
+            obst.useCheckpoints(new File(path, "checkpoint." + n + ".keys.bin"),
+                CHECKPOINT_INTERVAL);
             obst.optimalBST();
             endTime = System.currentTimeMillis();
             computeTime = endTime - startTime;
@@ -81,22 +97,29 @@ public class Main {
                 .println("Time to find optimal BST of " + n + " keys: " + computeTime + "ms.");
 
             // Construct the tree based off the results of the OBST algorithm.
-            obst.constructOBST(1, arr.length, -1);
-
-            // Print all results to their respective files.
-            FileOperations.arrToFile(obst.getE(),
-                path + "/output.ematrix." + n + ".keys.txt",
-                15, 10);
-            FileOperations.arrToFile(obst.getW(),
-                path + "/output.wmatrix." + n + ".keys.txt",
-                15, 10);
-            FileOperations.arrToFile(obst.getRoot(),
-                path + "/output.rootmatrix." + n + ".keys.txt",
-                8);
+            obst.constructOBST();
+
+            // Print all results to their respective files. Mapped matrices are already on disk as
+            // output.*matrix.#.keys.bin, so they are not exported again as text, and the "approx"
+            // engine does not calculate any matrices.
+            if (mapped) {
+              obst.closeMappedMatrices();
+            } else if (obst.getRoot() != null) {
+              FileOperations.arrToFile(obst.getE(),
+                  path + "/output.ematrix." + n + ".keys.txt",
+                  15, 10);
+              FileOperations.arrToFile(obst.getW(),
+                  path + "/output.wmatrix." + n + ".keys.txt",
+                  15, 10);
+              FileOperations.arrToFile(obst.getRoot(),
+                  path + "/output.rootmatrix." + n + ".keys.txt",
+                  8);
+            }
             FileOperations.arrToFile(computeTimes, path + "/obstComputeTimes.txt");
             FileOperations.treeToFile(obst, OBSTDouble.PrintValues.KEYS,
                 OBSTDouble.PrintFormat.HORIZONTAL,
-                path + "/output.tree.horizontal." + n + ".keys.txt");
+                path + "/output.tree.horizontal." + n + ".keys.txt",
+                HORIZONTAL_DEPTH, TreeRenderer.UNLIMITED);
             FileOperations.treeToFile(obst, OBSTDouble.PrintValues.KEYS,
                 OBSTDouble.PrintFormat.VERTICAL,
                 path + "/output.tree.vertical." + n + ".keys.txt");
@@ -114,21 +137,72 @@ public class Main {
           // Handle any thrown exceptions.
         } catch (IOException e) {
           System.out.println(e);
-        } catch (FileOperations.IncorrectClassTypeException e) {
-          System.out.println(e);
         }
       }
     }
   }
 
-  // Generates an array with n elements. Each element contains a random value from low to high.
-  private static int[] generateKeys(int n, int low, int high) {
-    int[] arr = new int[n];
+  // Creates the OBST engine named by the optional second argument: "classic" (the default) tries
+  // every candidate root, "knuth" narrows the candidates using Knuth's monotonicity,
+  // "parallel" does the same as "knuth" on every available processor, "compensated" does the same
+  // as "knuth" with compensated sums and a tolerance-aware tie-break, "vector" does the same as
+  // "classic" several candidates at a time with SIMD instructions, "tiled" does the same as
+  // "classic" one cache-sized tile of the matrices at a time, and "approx" builds a nearly optimal
+  // tree by bisection without calculating any matrices.
+  private static OBSTDouble createOBST(String[] args, int[] keys, double[] p, double[] q, int n) {
+    String engine = (args.length > ARG_ENGINE) ? args[ARG_ENGINE] : "classic";
+
+    switch (engine) {
+      case "knuth":
+        return new OBSTDoubleKnuth(keys, p, q, n);
+      case "parallel":
+        return new OBSTDoubleParallel(keys, p, q, n);
+      case "compensated":
+        return new OBSTDoubleCompensated(keys, p, q, n);
+      case "vector":
+        return new OBSTDoubleVector(keys, p, q, n);
+      case "tiled":
+        return new OBSTDoubleTiled(keys, p, q, n);
+      case "approx":
+        return new OBSTDoubleApprox(keys, p, q, n);
+      case "classic":
+        return new OBSTDouble(keys, p, q, n);
+      default:
+        System.out.println("An invalid engine was entered. If you wish to choose an engine, pass "
+            + "\"classic\", \"knuth\", \"parallel\", \"compensated\", \"vector\", \"tiled\" or "
+            + "\"approx\" after \"obst\".");
+        System.exit(0);
+        return null;
+    }
+  }
 
-    for (int i = 0; i < n; i++) {
-      Random rand = new Random();
-      arr[i] = rand.nextInt(high - low) + low;
+  // Returns the key file for n keys in data/keys/ascending: the binary n.keys.bin if it exists,
+  // since it loads without parsing, and n.keys.txt otherwise.
+  private static String keyFile(int n) {
+    File binary = new File("data/keys/ascending/" + n + ".keys.bin");
+    if (binary.isFile()) {
+      return binary.getPath();
+    }
+    return "data/keys/ascending/" + n + ".keys.txt";
+  }
+
+  // Generates n distinct keys from LOW to HIGH in ascending order. The optional second argument
+  // chooses how they are spread: "uniform" (the default), "normal", "exponential" or "clustered".
+  // The optional third argument is the seed; the same seed always gives the same keys.
+  private static int[] generateKeys(String[] args, int n) {
+    String name = (args.length > ARG_DISTRIBUTION) ? args[ARG_DISTRIBUTION] : "uniform";
+    long seed = (args.length > ARG_SEED) ? Long.parseLong(args[ARG_SEED]) : SEED;
+
+    KeyGenerator.Distribution distribution;
+    try {
+      distribution = KeyGenerator.Distribution.valueOf(name.toUpperCase());
+    } catch (IllegalArgumentException e) {
+      System.out.println("An invalid distribution was entered. If you wish to choose a "
+          + "distribution, pass \"uniform\", \"normal\", \"exponential\" or \"clustered\" after "
+          + "\"generate\", optionally followed by a seed.");
+      System.exit(0);
+      return null;
     }
-    return arr;
+    return new KeyGenerator(n, LOW, HIGH, distribution, seed).getKeys();
   }
 }
@@ -0,0 +1,99 @@
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * A packed matrix of doubles, stored in a memory-mapped file instead of on the heap. Use this for
+ * the e or w matrix when the key set is too large for HeapDoubleMatrix or for the heap. The file
+ * is in the format described by MatrixFile, so it can be reopened with open() after the program
+ * exits instead of recalculating or re-exporting the matrix.
+ */
+public class MappedDoubleMatrix extends TriangularDoubleMatrix implements Closeable {
+
+  /**
+   * The mapped file holding the header and the packed cells.
+   */
+  private final MappedSegments segments;
+
+  /**
+   * @param n Number of keys.
+   * @param segments The mapped file holding the header and the packed cells.
+   */
+  private MappedDoubleMatrix(int n, MappedSegments segments) {
+    super(n);
+    this.segments = segments;
+  }
+
+  /**
+   * Creates a new matrix file for n keys, replacing any file that already exists. Every cell
+   * starts at 0.
+   *
+   * @param fileName The file to store the matrix in.
+   * @param n Number of keys.
+   * @return The mapped matrix.
+   * @throws IOException if the file cannot be created or mapped.
+   */
+  public static MappedDoubleMatrix create(File fileName, int n) throws IOException {
+    if (fileName.exists() && !fileName.delete()) {
+      throw new IOException("Could not replace " + fileName + ".");
+    }
+
+    MappedSegments segments =
+        new MappedSegments(fileName, MatrixFile.fileSize(n, MatrixFile.ELEMENT_DOUBLE));
+    segments.putBytes(MatrixFile.header(n, MatrixFile.ELEMENT_DOUBLE));
+    return new MappedDoubleMatrix(n, segments);
+  }
+
+  /**
+   * Opens a matrix file that was previously created with create().
+   *
+   * @param fileName The file the matrix is stored in.
+   * @return The mapped matrix.
+   * @throws IOException if the file cannot be read or does not hold a double matrix.
+   */
+  public static MappedDoubleMatrix open(File fileName) throws IOException {
+    int n = MatrixFile.readHeader(MappedSegments.readHeader(fileName), MatrixFile.ELEMENT_DOUBLE);
+    long size = MatrixFile.fileSize(n, MatrixFile.ELEMENT_DOUBLE);
+    if (fileName.length() < size) {
+      throw new IOException(fileName + " is shorter than a matrix for " + n + " keys.");
+    }
+    return new MappedDoubleMatrix(n, new MappedSegments(fileName, size));
+  }
+
+  /**
+   * @param i The lower bound of the range.
+   * @param j The upper bound of the range.
+   * @return The value stored in [i][j].
+   */
+  @Override
+  public double get(int i, int j) {
+    return segments.getDouble(MatrixFile.HEADER_SIZE + (index(i, j) << 3));
+  }
+
+  /**
+   * @param i The lower bound of the range.
+   * @param j The upper bound of the range.
+   * @param value The value to store in [i][j].
+   */
+  @Override
+  public void set(int i, int j, double value) {
+    segments.putDouble(MatrixFile.HEADER_SIZE + (index(i, j) << 3), value);
+  }
+
+  /**
+   * Writes any changes in memory back to the file.
+   */
+  public void flush() {
+    segments.flush();
+  }
+
+  /**
+   * Writes any changes back to the file and closes it.
+   *
+   * @throws IOException if the file cannot be closed.
+   */
+  @Override
+  public void close() throws IOException {
+    segments.close();
+  }
+}
@@ -0,0 +1,135 @@
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * A file mapped into memory in fixed-size segments. A single MappedByteBuffer can address at most
+ * 2GB, but the matrices for large key sets need tens of GB, so the file is mapped as an array of
+ * 1GB buffers. The operating system pages the buffers in and out of memory as they are used, so
+ * none of the data counts towards the Java heap.
+ *
+ * Values are read and written in little-endian order. Callers must only use positions that are a
+ * multiple of the value's size, which guarantees a value never straddles two segments.
+ */
+class MappedSegments implements Closeable {
+
+  /**
+   * log2 of the segment size.
+   */
+  private static final int SEGMENT_SHIFT = 30;
+
+  /**
+   * Size of each mapped segment in bytes.
+   */
+  private static final long SEGMENT_SIZE = 1L << SEGMENT_SHIFT;
+
+  /**
+   * Masks a file position down to a position within its segment.
+   */
+  private static final long SEGMENT_MASK = SEGMENT_SIZE - 1;
+
+  private final RandomAccessFile file;
+  private final MappedByteBuffer[] segments;
+
+  /**
+   * Maps the first size bytes of a file, growing the file if it is shorter than that.
+   *
+   * @param fileName The file to map.
+   * @param size Number of bytes to map.
+   * @throws IOException if the file cannot be opened or mapped.
+   */
+  MappedSegments(File fileName, long size) throws IOException {
+    file = new RandomAccessFile(fileName, "rw");
+    try {
+      if (file.length() < size) {
+        file.setLength(size);
+      }
+
+      FileChannel channel = file.getChannel();
+      segments = new MappedByteBuffer[(int) ((size + SEGMENT_MASK) >>> SEGMENT_SHIFT)];
+      for (int s = 0; s < segments.length; s++) {
+        long start = (long) s << SEGMENT_SHIFT;
+        segments[s] = channel.map(FileChannel.MapMode.READ_WRITE, start,
+            Math.min(SEGMENT_SIZE, size - start));
+        segments[s].order(ByteOrder.LITTLE_ENDIAN);
+      }
+    } catch (IOException e) {
+      file.close();
+      throw e;
+    }
+  }
+
+  /**
+   * Reads the header at the start of a file without mapping it.
+   *
+   * @param fileName The file to read.
+   * @return A buffer containing the header.
+   * @throws IOException if the file cannot be read or is too short.
+   */
+  static ByteBuffer readHeader(File fileName) throws IOException {
+    try (RandomAccessFile file = new RandomAccessFile(fileName, "r")) {
+      ByteBuffer header = ByteBuffer.allocate(MatrixFile.HEADER_SIZE);
+      FileChannel channel = file.getChannel();
+      while (header.hasRemaining()) {
+        if (channel.read(header) < 0) {
+          throw new IOException(fileName + " is too short to be a matrix file.");
+        }
+      }
+      header.flip();
+      return header;
+    }
+  }
+
+  /**
+   * Writes bytes to the start of the file.
+   *
+   * @param bytes The bytes to write, from their position to their limit.
+   */
+  void putBytes(ByteBuffer bytes) {
+    ByteBuffer first = segments[0].duplicate();
+    first.position(0);
+    first.put(bytes.duplicate());
+  }
+
+  double getDouble(long position) {
+    return segments[(int) (position >>> SEGMENT_SHIFT)].getDouble((int) (position & SEGMENT_MASK));
+  }
+
+  void putDouble(long position, double value) {
+    segments[(int) (position >>> SEGMENT_SHIFT)].putDouble((int) (position & SEGMENT_MASK), value);
+  }
+
+  int getInt(long position) {
+    return segments[(int) (position >>> SEGMENT_SHIFT)].getInt((int) (position & SEGMENT_MASK));
+  }
+
+  void putInt(long position, int value) {
+    segments[(int) (position >>> SEGMENT_SHIFT)].putInt((int) (position & SEGMENT_MASK), value);
+  }
+
+  /**
+   * Writes any changes in memory back to the file.
+   */
+  void flush() {
+    for (MappedByteBuffer segment : segments) {
+      segment.force();
+    }
+  }
+
+  /**
+   * Writes any changes back to the file and closes it. The operating system releases the mapped
+   * memory once the buffers are garbage collected.
+   *
+   * @throws IOException if the file cannot be closed.
+   */
+  @Override
+  public void close() throws IOException {
+    flush();
+    file.close();
+  }
+}
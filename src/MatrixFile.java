@@ -0,0 +1,117 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Describes the binary file format used to store the packed e, w and root matrices on disk. Every
+ * file starts with a fixed-size, little-endian header:
+ *
+ *   offset  0: int   magic number, the bytes "OBST"
+ *   offset  4: int   format version
+ *   offset  8: int   n, the number of keys
+ *   offset 12: int   element type (ELEMENT_INT or ELEMENT_DOUBLE)
+ *   offset 16: int   layout (LAYOUT_TRIANGULAR)
+ *   offset 20: 12 reserved bytes, always 0
+ *
+ * The cells follow the header in the order described by TriangularMatrix, each stored as a
+ * little-endian int or double. The header is a multiple of 8 bytes, so every cell is aligned.
+ */
+public class MatrixFile {
+
+  /**
+   * The bytes "OBST" read as a little-endian int.
+   */
+  public static final int MAGIC = 0x5453424F;
+
+  /**
+   * Version of the format written by this class.
+   */
+  public static final int VERSION = 1;
+
+  /**
+   * Size of the header in bytes.
+   */
+  public static final int HEADER_SIZE = 32;
+
+  /**
+   * Element type of a file holding 4-byte ints, i.e. a root matrix.
+   */
+  public static final int ELEMENT_INT = 1;
+
+  /**
+   * Element type of a file holding 8-byte doubles, i.e. an e or w matrix.
+   */
+  public static final int ELEMENT_DOUBLE = 2;
+
+  /**
+   * Layout of a file holding the packed triangle described by TriangularMatrix.
+   */
+  public static final int LAYOUT_TRIANGULAR = 1;
+
+  /**
+   * Returns the size in bytes of one element of the given type.
+   *
+   * @param elementType ELEMENT_INT or ELEMENT_DOUBLE.
+   * @return The size of one element in bytes.
+   */
+  public static int elementSize(int elementType) {
+    return (elementType == ELEMENT_DOUBLE) ? Double.BYTES : Integer.BYTES;
+  }
+
+  /**
+   * Returns the size in bytes of a whole file, header included.
+   *
+   * @param n Number of keys.
+   * @param elementType ELEMENT_INT or ELEMENT_DOUBLE.
+   * @return The size of the file in bytes.
+   */
+  public static long fileSize(int n, int elementType) {
+    return HEADER_SIZE + TriangularMatrix.size(n) * elementSize(elementType);
+  }
+
+  /**
+   * Creates a header ready to be written to the start of a file.
+   *
+   * @param n Number of keys.
+   * @param elementType ELEMENT_INT or ELEMENT_DOUBLE.
+   * @return A buffer containing the header, positioned at 0.
+   */
+  public static ByteBuffer header(int n, int elementType) {
+    ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+    header.putInt(MAGIC);
+    header.putInt(VERSION);
+    header.putInt(n);
+    header.putInt(elementType);
+    header.putInt(LAYOUT_TRIANGULAR);
+    header.position(0);
+    return header;
+  }
+
+  /**
+   * Checks a header read from the start of a file and returns the number of keys it describes.
+   *
+   * @param header Buffer containing at least HEADER_SIZE bytes, positioned at the header.
+   * @param elementType The element type the caller expects.
+   * @return n, the number of keys.
+   * @throws IOException if the header is not a matrix file of the expected type.
+   */
+  public static int readHeader(ByteBuffer header, int elementType) throws IOException {
+    header = header.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+    int start = header.position();
+
+    if (header.getInt(start) != MAGIC) {
+      throw new IOException("Not a matrix file.");
+    }
+    if (header.getInt(start + 4) != VERSION) {
+      throw new IOException("Unsupported matrix file version " + header.getInt(start + 4) + ".");
+    }
+    if (header.getInt(start + 12) != elementType) {
+      throw new IOException("Matrix file holds element type " + header.getInt(start + 12)
+          + ", expected " + elementType + ".");
+    }
+    if (header.getInt(start + 16) != LAYOUT_TRIANGULAR) {
+      throw new IOException("Unsupported matrix layout " + header.getInt(start + 16) + ".");
+    }
+    return header.getInt(start + 8);
+  }
+}
@@ -0,0 +1,343 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Streams matrices to a file through a single fixed-size buffer, so the memory used while writing
+ * does not grow with the size of the matrix. Matrices can be written in two formats:
+ *
+ * - Binary: the little-endian format described by MatrixFile. This is the same format that
+ *   MappedDoubleMatrix and MappedIntMatrix use, so a matrix written this way can be reopened with
+ *   their open() methods.
+ *
+ * - Text: right-aligned columns, one row per line, in the same layout as the original
+ *   FileOperations.arrToFile() methods. Numbers are formatted by hand directly into the buffer
+ *   rather than through String.format(), which creates several objects per cell.
+ */
+public class MatrixWriter implements Closeable {
+
+  /**
+   * Size of the write buffer in bytes.
+   */
+  private static final int BUFFER_SIZE = 1 << 16;
+
+  /**
+   * Powers of 10 that can be represented exactly by a double.
+   */
+  private static final double[] POWERS_OF_10 = {
+      1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11, 1e12, 1e13, 1e14, 1e15
+  };
+
+  /**
+   * The largest value that can be scaled to a long without losing any integer digits (2^53).
+   */
+  private static final double MAX_EXACT = 9007199254740992.0;
+
+  private final FileChannel channel;
+  private final ByteBuffer buffer;
+
+  /**
+   * Scratch space for the digits of a single number, filled from the end.
+   */
+  private final byte[] digits = new byte[24];
+
+  /**
+   * Opens a file for writing, replacing anything already in it.
+   *
+   * @param fileName The name of the file to write to.
+   * @throws IOException if the file cannot be opened.
+   */
+  public MatrixWriter(String fileName) throws IOException {
+    channel = FileChannel.open(Paths.get(fileName), StandardOpenOption.CREATE,
+        StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+    buffer = ByteBuffer.allocateDirect(BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+  }
+
+  /**
+   * Writes a packed matrix of doubles in the binary format described by MatrixFile.
+   *
+   * @param matrix The matrix to write.
+   * @throws IOException if the file cannot be written to.
+   */
+  public void writeBinary(TriangularDoubleMatrix matrix) throws IOException {
+    int n = matrix.getN();
+    putHeader(n, MatrixFile.ELEMENT_DOUBLE);
+
+    for (int row = 1; row <= n + 1; row++) {
+      for (int col = row - 1; col <= n; col++) {
+        ensureRemaining(Double.BYTES);
+        buffer.putDouble(matrix.get(row, col));
+      }
+    }
+  }
+
+  /**
+   * Writes a packed matrix of ints in the binary format described by MatrixFile.
+   *
+   * @param matrix The matrix to write.
+   * @throws IOException if the file cannot be written to.
+   */
+  public void writeBinary(TriangularIntMatrix matrix) throws IOException {
+    int n = matrix.getN();
+    putHeader(n, MatrixFile.ELEMENT_INT);
+
+    for (int row = 1; row <= n + 1; row++) {
+      for (int col = row - 1; col <= n; col++) {
+        ensureRemaining(Integer.BYTES);
+        buffer.putInt(matrix.get(row, col));
+      }
+    }
+  }
+
+  /**
+   * Writes a packed matrix of doubles as text. Rows 1 through n+1 and columns 0 through n are
+   * written; cells outside of the packed triangle are written as whitespace.
+   *
+   * @param matrix The matrix to write.
+   * @param whitespace Width of each column.
+   * @param precision Number of digits after the decimal point.
+   * @throws IOException if the file cannot be written to.
+   */
+  public void writeText(TriangularDoubleMatrix matrix, int whitespace, int precision)
+      throws IOException {
+    int n = matrix.getN();
+
+    for (int row = 1; row <= n + 1; row++) {
+      for (int col = 0; col <= n; col++) {
+        if (matrix.contains(row, col)) {
+          putFixed(matrix.get(row, col), whitespace, precision);
+        } else {
+          putBlank(whitespace);
+        }
+      }
+      if (row < n + 1) {
+        putByte('\n');
+      }
+    }
+  }
+
+  /**
+   * Writes a packed matrix of ints as text. Rows and columns 1 through n are written; cells
+   * outside of the packed triangle, and cells containing 0, are written as whitespace.
+   *
+   * @param matrix The matrix to write.
+   * @param whitespace Width of each column.
+   * @throws IOException if the file cannot be written to.
+   */
+  public void writeText(TriangularIntMatrix matrix, int whitespace) throws IOException {
+    int n = matrix.getN();
+
+    for (int row = 1; row <= n; row++) {
+      for (int col = 1; col <= n; col++) {
+        int value = (col >= row) ? matrix.get(row, col) : 0;
+        if (value == 0) {
+          putBlank(whitespace);
+        } else {
+          putLong(value, whitespace);
+        }
+      }
+      if (row < n) {
+        putByte('\n');
+      }
+    }
+  }
+
+  /**
+   * Writes a 2D array of Doubles or BigDecimals as text, skipping the first row. Null cells are
+   * written as whitespace.
+   *
+   * @param arr The array to write.
+   * @param whitespace Width of each column.
+   * @param precision Number of digits after the decimal point.
+   * @throws IOException if the file cannot be written to.
+   */
+  public void writeText(Object[][] arr, int whitespace, int precision) throws IOException {
+    for (int row = 1; row < arr.length; row++) {
+      for (int col = 0; col < arr[row].length; col++) {
+        Object value = arr[row][col];
+        if (value == null) {
+          putBlank(whitespace);
+        } else if (value instanceof BigDecimal) {
+          putString(((BigDecimal) value).setScale(precision, RoundingMode.HALF_UP)
+              .toPlainString(), whitespace);
+        } else {
+          putFixed(((Number) value).doubleValue(), whitespace, precision);
+        }
+      }
+      if (row < arr.length - 1) {
+        putByte('\n');
+      }
+    }
+  }
+
+  /**
+   * Writes a 2D array of ints as text, skipping the first row and the first column. Cells
+   * containing 0 are written as whitespace.
+   *
+   * @param arr The array to write.
+   * @param whitespace Width of each column.
+   * @throws IOException if the file cannot be written to.
+   */
+  public void writeText(int[][] arr, int whitespace) throws IOException {
+    for (int row = 1; row < arr.length; row++) {
+      for (int col = 1; col < arr[row].length; col++) {
+        if (arr[row][col] == 0) {
+          putBlank(whitespace);
+        } else {
+          putLong(arr[row][col], whitespace);
+        }
+      }
+      if (row < arr.length - 1) {
+        putByte('\n');
+      }
+    }
+  }
+
+  /**
+   * Writes whatever is left in the buffer and closes the file.
+   *
+   * @throws IOException if the file cannot be written to or closed.
+   */
+  @Override
+  public void close() throws IOException {
+    try {
+      drain();
+    } finally {
+      channel.close();
+    }
+  }
+
+  /**
+   * Writes a MatrixFile header.
+   */
+  private void putHeader(int n, int elementType) throws IOException {
+    ensureRemaining(MatrixFile.HEADER_SIZE);
+    buffer.put(MatrixFile.header(n, elementType));
+  }
+
+  /**
+   * Writes a double right-aligned in a column of the given width, with exactly precision digits
+   * after the decimal point, rounding half up. This gives the same text as
+   * String.format("%width.precisionf"), except possibly in the last digit of values that lie
+   * almost exactly halfway between two outputs. Values too large to scale to a long are passed to
+   * String.format().
+   */
+  private void putFixed(double value, int width, int precision) throws IOException {
+    double magnitude = Math.abs(value);
+    if (precision >= POWERS_OF_10.length || !(magnitude < MAX_EXACT / POWERS_OF_10[precision])) {
+      putString(String.format("%." + precision + "f", value), width);
+      return;
+    }
+
+    long scaled = Math.round(magnitude * POWERS_OF_10[precision]);
+
+    // Fill the scratch space from the end: fraction digits, the decimal point, then the integer
+    // digits (at least one), then the sign.
+    int start = digits.length;
+    for (int d = 0; d < precision; d++) {
+      digits[--start] = (byte) ('0' + scaled % 10);
+      scaled /= 10;
+    }
+    if (precision > 0) {
+      digits[--start] = '.';
+    }
+    do {
+      digits[--start] = (byte) ('0' + scaled % 10);
+      scaled /= 10;
+    } while (scaled != 0);
+    if (value < 0) {
+      digits[--start] = '-';
+    }
+
+    putDigits(start, width);
+  }
+
+  /**
+   * Writes a long right-aligned in a column of the given width.
+   */
+  private void putLong(long value, int width) throws IOException {
+    if (value == Long.MIN_VALUE) {
+      putString(Long.toString(value), width);
+      return;
+    }
+
+    long magnitude = Math.abs(value);
+    int start = digits.length;
+    do {
+      digits[--start] = (byte) ('0' + magnitude % 10);
+      magnitude /= 10;
+    } while (magnitude != 0);
+    if (value < 0) {
+      digits[--start] = '-';
+    }
+
+    putDigits(start, width);
+  }
+
+  /**
+   * Writes the scratch digits from start onwards, right-aligned in a column of the given width.
+   */
+  private void putDigits(int start, int width) throws IOException {
+    int length = digits.length - start;
+    putSpaces(width - length);
+    ensureRemaining(length);
+    buffer.put(digits, start, length);
+  }
+
+  /**
+   * Writes an ASCII string right-aligned in a column of the given width.
+   */
+  private void putString(String value, int width) throws IOException {
+    byte[] bytes = value.getBytes(StandardCharsets.US_ASCII);
+    putSpaces(width - bytes.length);
+    for (byte b : bytes) {
+      putByte(b);
+    }
+  }
+
+  /**
+   * Writes an empty column of the given width. Like String.format("%widths", " "), this is always
+   * at least one space wide.
+   */
+  private void putBlank(int width) throws IOException {
+    putSpaces(Math.max(width, 1));
+  }
+
+  private void putSpaces(int count) throws IOException {
+    for (int s = 0; s < count; s++) {
+      putByte(' ');
+    }
+  }
+
+  private void putByte(int b) throws IOException {
+    ensureRemaining(1);
+    buffer.put((byte) b);
+  }
+
+  /**
+   * Makes room for the given number of bytes, writing the buffer to the file if necessary.
+   */
+  private void ensureRemaining(int bytes) throws IOException {
+    if (buffer.remaining() < bytes) {
+      drain();
+    }
+  }
+
+  /**
+   * Writes the contents of the buffer to the file and empties it.
+   */
+  private void drain() throws IOException {
+    buffer.flip();
+    while (buffer.hasRemaining()) {
+      channel.write(buffer);
+    }
+    buffer.clear();
+  }
+}
@@ -1,87 +1,341 @@
 import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 
 public class MergeSort {
 
+  // Runs this short or shorter are sorted by insertion sort before any merging. Below this size,
+  // shifting a few elements is cheaper than merging.
+  private static final int INSERTION_CUTOFF = 32;
+
+  // The parallel sort stops splitting ranges shorter than this, and merges runs shorter than this
+  // on one thread.
+  private static final int PARALLEL_CUTOFF = 1 << 13;
+
+  // The radix sort sorts this many bits of each key per pass, so its counts fit in the L1 cache.
+  private static final int RADIX_BITS = 11;
+
   // Due to the recursive nature of the merge sort algorithm, this overridable function's purpose
   // is twofold:
   // 1) Allows the function to be called more simply, as the program does not have to pass the
   //      low and high for the original array, which will always be 0 and n-1.
   // 2) Since Java arrays are Objects, and Objects are passed as reference values, it allows the
-  //      original array to be copied and returned without altering the original array. This is
-  //      especially necessary due to the recursive nature of the algorithm.
+  //      original array to be copied and returned without altering the original array.
+  //
+  // The sort itself allocates nothing but one scratch array the size of the input, which every
+  // merge reuses.
   public static int[] mergeSort(int[] arr) {
     int[] arrSorted = Arrays.copyOf(arr, arr.length);
-    mergeSort(arrSorted, 0, arr.length-1);
+    mergeSort(arrSorted, new int[arr.length], 0, arr.length);
     return arrSorted;
   }
 
-  // The "divide" part of divide and conquer, this function is responsible for splitting arrays
-  // at the midpoint. It works recursively to split all elements until there are n subarrays, each
-  // containing one element. It then calls merge(), which decides how to re-combine the array.
-  private static void mergeSort(int[] arr, int low, int high) {
-    // If the array has more than one element...
-    if (low < high) {
+  // The same as mergeSort(), but large arrays are split among every available processor.
+  public static int[] parallelMergeSort(int[] arr) {
+    return parallelMergeSort(arr, Runtime.getRuntime().availableProcessors());
+  }
 
-      // Find the midpoint.
-      int mid = (low + high) / 2;
+  // The same as mergeSort(), but large arrays are split among the given number of threads. Both
+  // halves of every range are sorted in parallel, and then merged in parallel too, so the last
+  // merges do not leave all but one thread idle.
+  public static int[] parallelMergeSort(int[] arr, int parallelism) {
+    if (parallelism < 1) {
+      throw new IllegalArgumentException("parallelism must be at least 1.");
+    }
+    int[] arrSorted = Arrays.copyOf(arr, arr.length);
+    int[] scratch = new int[arr.length];
+    if (parallelism == 1 || arr.length <= PARALLEL_CUTOFF) {
+      mergeSort(arrSorted, scratch, 0, arr.length);
+      return arrSorted;
+    }
 
-      // Recursively split the left sub-array.
-      mergeSort(arr, low, mid);
+    ForkJoinPool pool = new ForkJoinPool(parallelism);
+    try {
+      pool.invoke(new SortTask(arrSorted, scratch, 0, arr.length, false));
+    } finally {
+      pool.shutdown();
+    }
+    return arrSorted;
+  }
 
-      // Recursively split the right sub-array.
-      mergeSort(arr, mid + 1, high);
+  // Sorts keys that all lie from low to high, such as the ones Main generates, with an LSD radix
+  // sort. Subtracting low from every key leaves only as many bits to sort as the range needs (30
+  // for Main's keys), which are sorted RADIX_BITS at a time, lowest bits first: each pass counts
+  // how many keys have each digit, and then moves every key straight to its place. There are no
+  // comparisons at all, and each pass reads and writes the keys in one sweep. Like mergeSort(),
+  // the original array is left as it is.
+  public static int[] radixSort(int[] arr, int low, int high) {
+    checkRange(arr, arr.length, low, high);
 
-      // Recombine the arrays.
-      merge(arr, low, mid, high);
+    // The passes move the keys back and forth between the two arrays. Start in whichever one
+    // makes the last pass end in arrSorted.
+    int[] arrSorted = new int[arr.length];
+    int[] scratch = new int[arr.length];
+    if (radixPasses(low, high) % 2 == 1) {
+      radixSort(arr, arrSorted, scratch, arr.length, low, high);
+    } else {
+      radixSort(arr, scratch, arrSorted, arr.length, low, high);
     }
+    return arrSorted;
   }
 
-  // The "conquer" part of divide and conquer, this function is responsible for re-combining the
-  // subarrays back to an ordered array.
-  private static void merge(int[] arr, int low, int mid, int high) {
+  // Sorts arr[0..length) in place like radixSort(), using scratch, which must be at least as long,
+  // to move the keys back and forth. If there is an odd number of passes, the keys are copied back
+  // once at the end.
+  static void radixSortInPlace(int[] arr, int[] scratch, int length, int low, int high) {
+    checkRange(arr, length, low, high);
+    int[] sorted = radixSort(arr, scratch, arr, length, low, high);
+    if (sorted != arr) {
+      System.arraycopy(sorted, 0, arr, 0, length);
+    }
+  }
 
-    // Create empty arrays representing the sorted left and right sub-arrays.
-    int n1 = mid - low + 1;
-    int n2 = high - mid;
+  // Throws an IllegalArgumentException unless every key of arr[0..length) lies from low to high.
+  private static void checkRange(int[] arr, int length, int low, int high) {
+    if (low > high) {
+      throw new IllegalArgumentException("low must not be greater than high.");
+    }
+    for (int k = 0; k < length; k++) {
+      if (arr[k] < low || arr[k] > high) {
+        throw new IllegalArgumentException(arr[k] + " is not from " + low + " to " + high + ".");
+      }
+    }
+  }
+
+  // Returns the number of passes the radix sort makes over keys from low to high.
+  private static int radixPasses(int low, int high) {
+    long range = (long) high - low;
+    int bits = 64 - Long.numberOfLeadingZeros(range);
+    return Math.max(1, (bits + RADIX_BITS - 1) / RADIX_BITS);
+  }
 
-    // Add 1 to the n to account for a "sentinel value". This value represents infinite and will
-    // be put on the bottom of each array. This value will always be greater than other elements.
-    int[] L = new int[n1+1];
-    int[] R = new int[n2+1];
+  // Makes the passes of the radix sort over source[0..length), the first pass into first, the
+  // second into second, the third into first again, and so on. Returns the array the last pass
+  // wrote to.
+  private static int[] radixSort(int[] source, int[] first, int[] second, int length, int low,
+      int high) {
 
-    // Fill both left and right arrays with the values from the original array.
-    for (int i=0; i < n1; i++) {
-      L[i] = arr[low + i];
+    int passes = radixPasses(low, high);
+    int[] target = first;
+    int[] counts = new int[1 << RADIX_BITS];
+    int mask = (1 << RADIX_BITS) - 1;
+
+    for (int pass = 0; pass < passes; pass++) {
+      int shift = pass * RADIX_BITS;
+
+      // Count the keys with each digit, then turn the counts into the position of the first key
+      // with each digit.
+      Arrays.fill(counts, 0);
+      for (int k = 0; k < length; k++) {
+        counts[((source[k] - low) >>> shift) & mask]++;
+      }
+      int position = 0;
+      for (int digit = 0; digit < counts.length; digit++) {
+        int count = counts[digit];
+        counts[digit] = position;
+        position += count;
+      }
+
+      // Moving the keys in order keeps the order of the previous passes among equal digits.
+      for (int k = 0; k < length; k++) {
+        int value = source[k];
+        target[counts[((value - low) >>> shift) & mask]++] = value;
+      }
+
+      source = target;
+      target = (target == first) ? second : first;
+    }
+    return source;
+  }
+
+  // Sorts arr[low..high) with a bottom-up merge sort. Instead of splitting the array in half
+  // recursively until every piece holds one element, runs of INSERTION_CUTOFF elements are
+  // sorted in place first, and then merged pairwise into runs twice as long, until one run is
+  // left. Each round of merges moves the elements from arr to scratch or back, so no round copies
+  // anything it does not merge, and the result is copied back to arr at most once at the end.
+  private static void mergeSort(int[] arr, int[] scratch, int low, int high) {
+    for (int start = low; start < high; start += INSERTION_CUTOFF) {
+      insertionSort(arr, start, Math.min(start + INSERTION_CUTOFF, high));
     }
-    for (int j=0; j < n2; j++) {
-      R[j] = arr[mid + 1 + j];
+
+    int[] source = arr;
+    int[] target = scratch;
+    for (int width = INSERTION_CUTOFF; width < high - low; width *= 2) {
+      for (int start = low; start < high; start += 2 * width) {
+        int mid = Math.min(start + width, high);
+        int end = (int) Math.min((long) start + 2 * width, high);
+        merge(source, start, mid, mid, end, target, start);
+      }
+      int[] swap = source;
+      source = target;
+      target = swap;
     }
 
-    // Add the sentinel values to the left and right arrays.
-    L[n1] = Integer.MAX_VALUE;
-    R[n2] = Integer.MAX_VALUE;
+    if (source != arr) {
+      System.arraycopy(source, low, arr, low, high - low);
+    }
+  }
+
+  // Sorts arr[low..high) by moving each element left past every larger element.
+  private static void insertionSort(int[] arr, int low, int high) {
+    for (int i = low + 1; i < high; i++) {
+      int value = arr[i];
+      int j = i - 1;
+      while (j >= low && arr[j] > value) {
+        arr[j + 1] = arr[j];
+        j--;
+      }
+      arr[j + 1] = value;
+    }
+  }
 
-    int lowIndex = 0;
-    int highIndex = 0;
+  // The "conquer" part of divide and conquer, this function is responsible for re-combining two
+  // sorted runs, source[leftLow..leftHigh) and source[rightLow..rightHigh), into one sorted run in
+  // target, starting at targetLow.
+  private static void merge(int[] source, int leftLow, int leftHigh, int rightLow, int rightHigh,
+      int[] target, int targetLow) {
 
-    // Starting with the lowest index, go through each elements of the original array and
-    // add the lowest values first.
-    for (int key = low; key <= high; key++) {
+    int left = leftLow;
+    int right = rightLow;
+    int key = targetLow;
+
+    // Compare the first element of the left run to the first element of the right run. Whichever
+    // is smaller is put in the target, and the index of the run it belonged to is iterated. The
+    // left run wins ties, so equal elements keep their order.
+    while (left < leftHigh && right < rightHigh) {
+      if (source[left] <= source[right]) {
+        target[key++] = source[left++];
+      } else {
+        target[key++] = source[right++];
+      }
+    }
+
+    // Once one of the runs runs out, the rest of the other is already in order.
+    System.arraycopy(source, left, target, key, leftHigh - left);
+    key += leftHigh - left;
+    System.arraycopy(source, right, target, key, rightHigh - right);
+  }
+
+  // Sorts arr[low..high), leaving the result in arr or, if inScratch is set, in scratch. The two
+  // halves are sorted in parallel into the other array, so that merging them puts the result
+  // where it is wanted without copying.
+  private static class SortTask extends RecursiveAction {
+
+    private static final long serialVersionUID = 1L;
+
+    private final int[] arr;
+    private final int[] scratch;
+    private final int low;
+    private final int high;
+    private final boolean inScratch;
+
+    SortTask(int[] arr, int[] scratch, int low, int high, boolean inScratch) {
+      this.arr = arr;
+      this.scratch = scratch;
+      this.low = low;
+      this.high = high;
+      this.inScratch = inScratch;
+    }
+
+    @Override
+    protected void compute() {
+      if (high - low <= PARALLEL_CUTOFF) {
+        mergeSort(arr, scratch, low, high);
+        if (inScratch) {
+          System.arraycopy(arr, low, scratch, low, high - low);
+        }
+        return;
+      }
+
+      int mid = (low + high) >>> 1;
+      invokeAll(new SortTask(arr, scratch, low, mid, !inScratch),
+          new SortTask(arr, scratch, mid, high, !inScratch));
+      if (inScratch) {
+        new MergeTask(arr, low, mid, mid, high, scratch, low).compute();
+      } else {
+        new MergeTask(scratch, low, mid, mid, high, arr, low).compute();
+      }
+    }
+  }
+
+  // Merges two sorted runs like merge(), but splits long runs so that both halves of the result
+  // are merged in parallel. The middle element of the longer run is found in the shorter run by
+  // binary search: everything before it in both runs belongs to the first half of the result, and
+  // everything after it to the second half.
+  private static class MergeTask extends RecursiveAction {
+
+    private static final long serialVersionUID = 1L;
+
+    private final int[] source;
+    private final int leftLow;
+    private final int leftHigh;
+    private final int rightLow;
+    private final int rightHigh;
+    private final int[] target;
+    private final int targetLow;
+
+    MergeTask(int[] source, int leftLow, int leftHigh, int rightLow, int rightHigh, int[] target,
+        int targetLow) {
+      this.source = source;
+      this.leftLow = leftLow;
+      this.leftHigh = leftHigh;
+      this.rightLow = rightLow;
+      this.rightHigh = rightHigh;
+      this.target = target;
+      this.targetLow = targetLow;
+    }
+
+    @Override
+    protected void compute() {
+      int leftLength = leftHigh - leftLow;
+      int rightLength = rightHigh - rightLow;
+      if (leftLength + rightLength <= PARALLEL_CUTOFF) {
+        merge(source, leftLow, leftHigh, rightLow, rightHigh, target, targetLow);
+        return;
+      }
+
+      // Split both runs around the middle element of the longer one. Elements of the left run
+      // that equal the middle element stay before those of the right run.
+      int leftSplit;
+      int rightSplit;
+      if (leftLength >= rightLength) {
+        leftSplit = (leftLow + leftHigh) >>> 1;
+        rightSplit = lowerBound(source, rightLow, rightHigh, source[leftSplit]);
+      } else {
+        rightSplit = (rightLow + rightHigh) >>> 1;
+        leftSplit = upperBound(source, leftLow, leftHigh, source[rightSplit]);
+      }
+
+      int targetSplit = targetLow + (leftSplit - leftLow) + (rightSplit - rightLow);
+      invokeAll(new MergeTask(source, leftLow, leftSplit, rightLow, rightSplit, target, targetLow),
+          new MergeTask(source, leftSplit, leftHigh, rightSplit, rightHigh, target, targetSplit));
+    }
+  }
+
+  // Returns the position of the first element of arr[low..high) that is not less than value.
+  private static int lowerBound(int[] arr, int low, int high, int value) {
+    while (low < high) {
+      int mid = (low + high) >>> 1;
+      if (arr[mid] < value) {
+        low = mid + 1;
+      } else {
+        high = mid;
+      }
+    }
+    return low;
+  }
 
-      // Compare the first element of the left array to the first element of the right array.
-      // Whichever is smaller is put in the first element of the original array, and the index of
-      // the array it belonged to is iterated. The other index is unchanged. The new value is then
-      // compared against the value that "lost" the previous comparison. Eventually, one of the
-      // arrays will hit the sentinel value. No more swapping is necessary, and the original array
-      // is filled with the remaining elements of the array that did not hit its sentinel value.
-      if (L[lowIndex] <= R[highIndex]) {
-        arr[key] = L[lowIndex];
-        lowIndex++;
+  // Returns the position of the first element of arr[low..high) that is greater than value.
+  private static int upperBound(int[] arr, int low, int high, int value) {
+    while (low < high) {
+      int mid = (low + high) >>> 1;
+      if (arr[mid] <= value) {
+        low = mid + 1;
       } else {
-        arr[key] = R[highIndex];
-        highIndex++;
+        high = mid;
       }
     }
+    return low;
   }
 
 }
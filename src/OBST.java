@@ -1,18 +1,21 @@
 import java.io.IOException;
+import java.io.UncheckedIOException;
 
 /**
  * Calculates and constructs an optimal binary serarch tree based off of search probabilities.
- * Accepts either a BigDecimal or Double as a generic, which allows it to work with either data
- * type. See OBSTBigDecimal and OBSTDouble for each implementation.
+ * Works with either BigDecimal or double probabilities; the generic is the type the e and w
+ * matrices are returned as, which lets each implementation hand out its matrices without
+ * converting them. See OBSTBigDecimal and OBSTDouble for each implementation.
  *
- * @param <T> BigDecimal or Double
+ * @param <M> BigDecimal[][] or TriangularDoubleMatrix
  */
-public abstract class OBST<T> {
+public abstract class OBST<M> {
 
   /**
-   * Used with print() function to specify whether to print a horizontal or vertical tree.
+   * Used with print() function to specify whether to print a horizontal or vertical tree, or to
+   * write it as JSON or as a Graphviz DOT graph. See TreeRenderer.
    */
-  public enum PrintFormat { HORIZONTAL, VERTICAL }
+  public enum PrintFormat { HORIZONTAL, VERTICAL, JSON, DOT }
 
   /**
    * Used with print() function to specify whether to print the keys or their original indexes.
@@ -24,50 +27,30 @@ public abstract class OBST<T> {
    */
   int n;
 
-  /**
-   * Probabilities for all real keys.
-   */
-  T[] p;
-
-  /**
-   * Probabilities for all dummy keys.
-   */
-  T[] q;
-
   /**
    * Keys to be processed into an optimal binary search tree.
    */
   int[] keys;
 
   /**
-   * Expected cost of searching for keys within a given range.
-   */
-  T[][] e;
-
-  /**
-   * @return 2D array representing the expected cost of searching within a range of keys.
-   */
-  public T[][] getE() {return e;}
-
-  /**
-   * Probability of searching for any key in a given range.
+   * @return Matrix representing the expected cost of searching within a range of keys.
    */
-  T[][] w;
+  public abstract M getE();
 
   /**
-   * @return 2D array representing the probability of searching for a key in a range of keys.
+   * @return Matrix representing the probability of searching for a key in a range of keys.
    */
-  public T[][] getW() {return w;}
+  public abstract M getW();
 
   /**
    * Indexes of optimal roots for each key range.
    */
-  int[][] root;
+  TriangularIntMatrix root;
 
   /**
-   * @return 2D array representing the indexes of optimal roots for each key range.
+   * @return Packed matrix representing the indexes of optimal roots for each key range.
    */
-  public int[][] getRoot() {return root;}
+  public TriangularIntMatrix getRoot() {return root;}
 
   /**
    * An optimized binary search tree containing the keys.
@@ -91,7 +74,7 @@ public abstract class OBST<T> {
    *
    * Let us take a tree representing 5 keys. The root of the entire tree will always be root[1][n],
    * because this represents the range of keys 1-n, which is the entire key set. We then take the
-   * index in this element and recursively work down one side, then the other. For instance, if
+   * index in this element and work down one side, then the other. For instance, if
    * root[1][n] = 4, then the 3rd key will be the root of the tree.
    *
    * Since this leaves keys 1, 2, and 3 on the left, we need to find the optimal root of all
@@ -107,53 +90,192 @@ public abstract class OBST<T> {
    *      / \
    *     1   3
    *
-   * Using this conceptual framework, we can create the algorithm in this function.
+   * Rather than recursing once per node, we keep the ranges that still need a root on an
+   * explicit stack, so deep trees cannot overflow the call stack. Each range is popped once and
+   * looks up a single cell of the root matrix, so the whole tree is built in O(n) time. The
+   * children found for each key index are recorded in two arrays, which buildTrees() then turns
+   * into the key tree and the index tree in a single pass.
    *
    * @param i The lower bound of the range.
    * @param j The upper bound of the range.
-   * @param prevRoot
    */
-  public void constructOBST(int i, int j, int prevRoot) {
-    int currentRoot = root[i][j];
-    int rootValue = keys[currentRoot - 1];
+  public void constructOBST(int i, int j) {
+    int[] left = new int[n + 1];
+    int[] right = new int[n + 1];
 
-    bstIndexes.add(currentRoot);
-    bstKeys.add(rootValue);
+    // Each stack entry is a range [low..high] and the key index of the parent that the root of the
+    // range hangs from. A positive parent means the range is the parent's left subtree, a negative
+    // parent means it is the right subtree, and 0 means the range has no parent.
+    int[] stackLow = new int[n + 1];
+    int[] stackHigh = new int[n + 1];
+    int[] stackParent = new int[n + 1];
+    int top = 0;
+    int treeRoot = 0;
 
-    // If the current root is the optimal root for all keys, no recursion has been performed,
-    // the previous root does not exist - so we make the current root act as the previous root.
-    if (currentRoot == root[1][root.length - 1]) {
-      prevRoot = currentRoot;
+    if (i <= j) {
+      stackLow[top] = i;
+      stackHigh[top] = j;
+      stackParent[top] = 0;
+      top++;
     }
 
-    // If the current root is greater than the lowest key in the range being evaluated, then we
-    // still have values in the j row we need to evaluate for the left child, so work our
-    // way downwards through the matrix.
-    if (currentRoot > i) {
+    while (top > 0) {
+      top--;
+      int low = stackLow[top];
+      int high = stackHigh[top];
+      int parent = stackParent[top];
+      int currentRoot = root.get(low, high);
 
-      // Since we're going down, we decrease j by one and evaluate that node.
-      currentRoot = root[i][prevRoot - 1];
-      constructOBST(i, prevRoot - 1, currentRoot);
+      if (parent > 0) {
+        left[parent] = currentRoot;
+      } else if (parent < 0) {
+        right[-parent] = currentRoot;
+      } else {
+        treeRoot = currentRoot;
+      }
+
+      // Keys low through currentRoot-1 form the left subtree, and keys currentRoot+1 through high
+      // form the right subtree. Empty ranges have no root, so they are not pushed.
+      if (currentRoot < high) {
+        stackLow[top] = currentRoot + 1;
+        stackHigh[top] = high;
+        stackParent[top] = -currentRoot;
+        top++;
+      }
+      if (currentRoot > low) {
+        stackLow[top] = low;
+        stackHigh[top] = currentRoot - 1;
+        stackParent[top] = currentRoot;
+        top++;
+      }
     }
 
-    // If the current root is less than the highest key in the range being evaluated, then we
-    // still have values in the i column we need to evaluate for the right child, so work our way
-    // to the right through the matrix.
-    if (currentRoot < j && prevRoot + 1 < root.length && root[prevRoot + 1][j] != 0) {
+    buildTrees(i, j, treeRoot, left, right);
+  }
+
+  /**
+   * Constructs the optimal binary search tree for the whole key set. See constructOBST(i, j).
+   */
+  public void constructOBST() {
+    constructOBST(1, n);
+  }
 
-      // Since we are going right, we increase i by one and evaluate that node.
-      currentRoot = root[prevRoot + 1][j];
-      constructOBST(prevRoot + 1, j, currentRoot);
+  /**
+   * Searches the tree built by constructOBST() for every key in a batch. See BST.searchAll():
+   * keys in ascending order are found in a single walk of the tree.
+   *
+   * @param queries The keys to search for.
+   * @return The index of each key, or 0 if it is not in the tree.
+   */
+  public int[] searchIndexes(int[] queries) {
+    int[] indexes = new int[queries.length];
+    searchIndexes(queries, indexes);
+    return indexes;
+  }
+
+  /**
+   * Searches the tree built by constructOBST() for every key in a batch, without allocating
+   * anything per key. The key tree and the index tree have the same shape, so they are walked
+   * side by side, and the index is read from the node of bstIndexes where the key was found.
+   *
+   * @param queries The keys to search for.
+   * @param indexes Set to the index of each key, or 0 if it is not in the tree. Must be at least
+   *     as long as queries.
+   */
+  public void searchIndexes(int[] queries, int[] indexes) {
+    if (indexes.length < queries.length) {
+      throw new IllegalArgumentException("indexes must be at least as long as queries.");
     }
+    bstKeys.searchAll(queries, bstIndexes, null, indexes, 0);
+  }
+
+  /**
+   * Copies the tree of keys built by constructOBST() into a flat, read-only layout that is much
+   * faster to search. FrozenBST.search() returns the key's index, like a search of bstIndexes.
+   *
+   * @param layout The order to store the nodes in.
+   * @return The frozen tree.
+   */
+  public FrozenBST freeze(FrozenBST.Layout layout) {
+    return new FrozenBST(bstKeys, layout);
+  }
+
+  /**
+   * Replaces bstKeys and bstIndexes with trees of the given shape. The key indexes low through
+   * high must all be in the tree, and left[r] and right[r] hold the key indexes of the children of
+   * key index r (or 0 if it has no child on that side). Both trees are built in the same pass, in
+   * O(n) time, without searching from the root for each node.
+   *
+   * @param low The lowest key index in the tree.
+   * @param high The highest key index in the tree.
+   * @param treeRoot The key index of the root, or 0 if the tree is empty.
+   * @param left The key index of each key index's left child.
+   * @param right The key index of each key index's right child.
+   */
+  void buildTrees(int low, int high, int treeRoot, int[] left, int[] right) {
+    BST keyTree = new BST();
+    BST indexTree = new BST();
+    BST.Node[] keyNodes = new BST.Node[n + 1];
+    BST.Node[] indexNodes = new BST.Node[n + 1];
+
+    for (int r = low; r <= high; r++) {
+      keyNodes[r] = keyTree.createNode(keys[r - 1]);
+      indexNodes[r] = indexTree.createNode(r);
+    }
+
+    for (int r = low; r <= high; r++) {
+      keyNodes[r].setLeft(keyNodes[left[r]]);
+      keyNodes[r].setRight(keyNodes[right[r]]);
+      indexNodes[r].setLeft(indexNodes[left[r]]);
+      indexNodes[r].setRight(indexNodes[right[r]]);
+    }
+
+    keyTree.setRoot(keyNodes[treeRoot]);
+    indexTree.setRoot(indexNodes[treeRoot]);
+    bstKeys = keyTree;
+    bstIndexes = indexTree;
   }
 
   /**
    * Prints the binary search tree in the format specified by the passed arguments.
    *
    * @param values KEYS will print the keys; INDEXES will print the original indexes of the keys.
-   * @param format HORIZONTAL will print the tree horizontally; VERTICAL will print vertically.
+   * @param format The format to print the tree in, e.g. HORIZONTAL or VERTICAL.
    */
   public void print(PrintValues values, PrintFormat format) {
+    try {
+      print(values, format, System.out);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  /**
+   * Writes the binary search tree to out in the format specified by the passed arguments.
+   *
+   * @param values KEYS will print the keys; INDEXES will print the original indexes of the keys.
+   * @param format The format to print the tree in, e.g. HORIZONTAL or VERTICAL.
+   * @param out Where to write the tree to, e.g. a Writer. It is not flushed or closed.
+   * @throws IOException if out cannot be written to.
+   */
+  public void print(PrintValues values, PrintFormat format, Appendable out) throws IOException {
+    print(values, format, out, TreeRenderer.UNLIMITED, TreeRenderer.UNLIMITED);
+  }
+
+  /**
+   * Writes the binary search tree to out in the format specified by the passed arguments, leaving
+   * out everything deeper than maxDepth and everything after the first maxNodes nodes. See
+   * TreeRenderer.
+   *
+   * @param values KEYS will print the keys; INDEXES will print the original indexes of the keys.
+   * @param format The format to print the tree in, e.g. HORIZONTAL or VERTICAL.
+   * @param out Where to write the tree to, e.g. a Writer. It is not flushed or closed.
+   * @param maxDepth The deepest level to print. The root is at depth 0.
+   * @param maxNodes The most nodes to print.
+   * @throws IOException if out cannot be written to.
+   */
+  public void print(PrintValues values, PrintFormat format, Appendable out, int maxDepth,
+      int maxNodes) throws IOException {
     BST tree;
 
     if (values == PrintValues.KEYS) {
@@ -161,17 +283,8 @@ public abstract class OBST<T> {
     } else if (values == PrintValues.INDEXES) {
       tree = bstIndexes;
     } else {
-      tree = null;
-      System.out.println("PrintValues must be KEYS or INDEXES.");
-    }
-    if (tree != null) {
-      if (format == PrintFormat.HORIZONTAL) {
-        tree.printHorizontal();
-      } else if (format == PrintFormat.VERTICAL) {
-        tree.printVertical();
-      } else {
-        System.out.println("PrintFormat must be HORIZONTAL or VERTICAL.");
-      }
+      throw new IllegalArgumentException("PrintValues must be KEYS or INDEXES.");
     }
+    new TreeRenderer(format, maxDepth, maxNodes).render(tree, out);
   }
-}
\ No newline at end of file
+}
@@ -2,8 +2,68 @@ import java.math.BigDecimal;
 
 /**
  * Extends OBST to perform operations on BigDecimal values.
+ *
+ * Adding BigDecimals allocates a new object every time, which in the O(n^3) loop of optimalBST()
+ * is far too slow and too much garbage for large key sets. Since every probability is a decimal
+ * with a finite number of digits, we instead scale all of them by the same power of ten, so they
+ * become whole numbers of units, and calculate with longs. Sums of whole numbers are exact, so
+ * the e and w matrices hold exactly the values BigDecimal arithmetic would produce, and every
+ * comparison, and therefore the root matrix, comes out the same. The e and w matrices are only
+ * turned back into BigDecimals if a caller asks for them through getE() or getW().
+ *
+ * Every addition is checked for overflow. If the probabilities have too many digits to fit in a
+ * long once scaled, or a sum does not fit, optimalBST() falls back to calculating with BigDecimals.
  */
-public class OBSTBigDecimal extends OBST<BigDecimal> {
+public class OBSTBigDecimal extends OBST<BigDecimal[][]> {
+
+  /**
+   * Probabilities for all real keys.
+   */
+  BigDecimal[] p;
+
+  /**
+   * Probabilities for all dummy keys.
+   */
+  BigDecimal[] q;
+
+  /**
+   * Expected cost of searching for keys within a given range, in units of 10^-scale.
+   */
+  TriangularLongMatrix eUnits;
+
+  /**
+   * Probability of searching for any key in a given range, in units of 10^-scale.
+   */
+  TriangularLongMatrix wUnits;
+
+  /**
+   * The number of decimal places of the smallest unit, i.e. the largest scale of any probability.
+   */
+  int scale;
+
+  /**
+   * Expected cost of searching for keys within a given range. Only used if the fixed point
+   * calculation overflowed; otherwise this is created from eUnits when getE() is called.
+   */
+  BigDecimal[][] e;
+
+  /**
+   * @return 2D array representing the expected cost of searching within a range of keys.
+   */
+  @Override
+  public BigDecimal[][] getE() {return (e != null) ? e : unscaleMatrix(eUnits);}
+
+  /**
+   * Probability of searching for any key in a given range. Only used if the fixed point
+   * calculation overflowed; otherwise this is created from wUnits when getW() is called.
+   */
+  BigDecimal[][] w;
+
+  /**
+   * @return 2D array representing the probability of searching for a key in a range of keys.
+   */
+  @Override
+  public BigDecimal[][] getW() {return (w != null) ? w : unscaleMatrix(wUnits);}
 
   /**
    * @param keys Key set to use to compute and construct the optimal binary search tree.
@@ -16,16 +76,93 @@ public class OBSTBigDecimal extends OBST<BigDecimal> {
     this.p = p;
     this.q = q;
     this.n = n;
-
-    e = new BigDecimal[n + 2][n + 1];
-    w = new BigDecimal[n + 2][n + 1];
-    root = new int[n + 1][n + 1];
   }
 
   /**
    * Calculates the optimal binary search tree based on the probabilities of searching for each key.
+   * See OBSTDouble.optimalBST() for how the matrices are filled.
    */
   public void optimalBST() {
+    e = null;
+    w = null;
+    eUnits = null;
+    wUnits = null;
+    root = new HeapIntMatrix(n);
+
+    try {
+      optimalBSTFixedPoint();
+    } catch (ArithmeticException overflow) {
+      eUnits = null;
+      wUnits = null;
+      root = new HeapIntMatrix(n);
+      optimalBSTBigDecimal();
+    }
+  }
+
+  /**
+   * Calculates the matrices with every probability scaled to a whole number of units.
+   *
+   * @throws ArithmeticException if a probability or a sum does not fit in a long.
+   */
+  private void optimalBSTFixedPoint() {
+    scale = 0;
+    for (BigDecimal v : p) {
+      scale = Math.max(scale, v.scale());
+    }
+    for (BigDecimal v : q) {
+      scale = Math.max(scale, v.scale());
+    }
+
+    // Increasing the scale of a BigDecimal never rounds, so every value converts exactly.
+    long[] pUnits = new long[n];
+    long[] qUnits = new long[n + 1];
+    for (int i = 0; i < n; i++) {
+      pUnits[i] = p[i].setScale(scale).unscaledValue().longValueExact();
+    }
+    for (int i = 0; i <= n; i++) {
+      qUnits[i] = q[i].setScale(scale).unscaledValue().longValueExact();
+    }
+
+    TriangularLongMatrix e = new HeapLongMatrix(n);
+    TriangularLongMatrix w = new HeapLongMatrix(n);
+
+    // Fill the bottom of the two matrices with the dummy key values.
+    for (int i = 1; i <= n + 1; i++) {
+      e.set(i, i - 1, qUnits[i - 1]);
+      w.set(i, i - 1, qUnits[i - 1]);
+    }
+
+    for (int l = 1; l <= n; l++) {
+      for (int i = 1; i <= (n - l + 1); i++) {
+        int j = i + l - 1;
+        long wij = Math.addExact(Math.addExact(w.get(i, j - 1), pUnits[j - 1]), qUnits[j]);
+        w.set(i, j, wij);
+
+        long eij = Long.MAX_VALUE;
+        int rootij = 0;
+        for (int r = i; r <= j; r++) {
+          long t = Math.addExact(Math.addExact(e.get(i, r - 1), e.get(r + 1, j)), wij);
+          if (t < eij) {
+            eij = t;
+            rootij = r;
+          }
+        }
+        e.set(i, j, eij);
+        root.set(i, j, rootij);
+      }
+    }
+
+    eUnits = e;
+    wUnits = w;
+  }
+
+  /**
+   * Calculates the matrices with BigDecimal arithmetic. This is only used when the probabilities
+   * cannot be calculated in fixed point.
+   */
+  private void optimalBSTBigDecimal() {
+    e = new BigDecimal[n + 2][n + 1];
+    w = new BigDecimal[n + 2][n + 1];
 
     // Fill the bottom of two 2D matrices with the dummy key values.
     for (int i = 1; i <= n + 1; i++) {
@@ -43,10 +180,31 @@ public class OBSTBigDecimal extends OBST<BigDecimal> {
           BigDecimal t = e[i][r - 1].add(e[r + 1][j]).add(w[i][j]);
           if (t.compareTo(e[i][j]) < 0) {
             e[i][j] = t;
-            root[i][j] = r;
+            root.set(i, j, r);
           }
         }
       }
     }
   }
+
+  /**
+   * Converts a matrix of units back to a BigDecimal 2D array. Cells outside of the packed triangle
+   * are left null.
+   *
+   * @param matrix Packed matrix of units to convert.
+   * @return BigDecimal 2D array, or null if the matrix has not been calculated.
+   */
+  private BigDecimal[][] unscaleMatrix(TriangularLongMatrix matrix) {
+    if (matrix == null) {
+      return null;
+    }
+
+    BigDecimal[][] newArr = new BigDecimal[n + 2][n + 1];
+    for (int i = 1; i <= n + 1; i++) {
+      for (int j = i - 1; j <= n; j++) {
+        newArr[i][j] = BigDecimal.valueOf(matrix.get(i, j), scale);
+      }
+    }
+    return newArr;
+  }
 }
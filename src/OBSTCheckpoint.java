@@ -0,0 +1,354 @@
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Saves the progress of OBSTDouble.optimalBST() to a file while it runs, so that a run that
+ * crashes, runs out of memory or is stopped can be resumed from the last checkpoint instead of
+ * from scratch. See OBSTDouble.useCheckpoints().
+ *
+ * optimalBST() fills the matrices one diagonal at a time, and a finished diagonal never changes
+ * again, so a checkpoint only has to add the diagonals finished since the one before. The file
+ * starts with a fixed-size, little-endian header:
+ *
+ *   offset  0: int   magic number, the bytes "CKPT"
+ *   offset  4: int   format version
+ *   offset  8: int   n, the number of keys
+ *   offset 12: int   the last diagonal l saved; diagonals 1 to l are complete
+ *   offset 16: long  fingerprint of the engine and the probabilities the cells were calculated for
+ *   offset 24: 8 reserved bytes, always 0
+ *
+ * The diagonals follow the header in order. Diagonal l holds the n - l + 1 cells [i][i+l-1]: first
+ * their e values, then their w values (little-endian doubles), then their roots (little-endian
+ * ints). The dummy keys are not saved, since initialize() fills them in from q.
+ *
+ * The diagonals are written on a background thread, so the calculation never waits for the disk;
+ * if a checkpoint is still being written when the next is due, the next is skipped. The header is
+ * only rewritten once the diagonals it counts have been forced to disk, so a run that dies while
+ * writing still leaves the previous checkpoint intact.
+ */
+public class OBSTCheckpoint {
+
+  /**
+   * The bytes "CKPT" read as a little-endian int.
+   */
+  public static final int MAGIC = 0x54504B43;
+
+  /**
+   * Version of the format written by this class.
+   */
+  public static final int VERSION = 1;
+
+  /**
+   * Size of the header in bytes.
+   */
+  public static final int HEADER_SIZE = 32;
+
+  /**
+   * Size in bytes of one cell: its e and w values and its root.
+   */
+  private static final int CELL_SIZE = 2 * Double.BYTES + Integer.BYTES;
+
+  private final File file;
+  private final long intervalNanos;
+
+  /**
+   * The engine being checkpointed, and what the file must match for it to be resumed.
+   */
+  private OBSTDouble obst;
+  private int n;
+  private long fingerprint;
+
+  /**
+   * The open checkpoint file, or null until the first checkpoint is written.
+   */
+  private FileChannel channel;
+
+  /**
+   * The thread the diagonals are written on, and the checkpoint it is writing.
+   */
+  private ExecutorService writer;
+  private Future<?> pending;
+
+  /**
+   * The last diagonal handed to the writer, when it was handed over, and the error that stopped
+   * the checkpoints, if any.
+   */
+  private int queued;
+  private long lastCheckpoint;
+  private IOException failure;
+
+  /**
+   * @param file The file to save the checkpoints to, and to resume from.
+   * @param intervalMillis The least time between two checkpoints, in milliseconds. 0 saves one after
+   *     every diagonal, unless the previous checkpoint is still being written.
+   */
+  public OBSTCheckpoint(File file, long intervalMillis) {
+    if (intervalMillis < 0) {
+      throw new IllegalArgumentException("intervalMillis must not be negative.");
+    }
+    this.file = file;
+    this.intervalNanos = TimeUnit.MILLISECONDS.toNanos(intervalMillis);
+  }
+
+  /**
+   * @return The file the checkpoints are saved to.
+   */
+  public File getFile() {return file;}
+
+  /**
+   * @return The distance in bytes from the start of the file to the start of diagonal l.
+   */
+  private long offset(int l) {
+
+    // Diagonals 1 to l - 1 hold n + (n - 1) + ... + (n - l + 2) cells.
+    long cells = (long) (l - 1) * n - (long) (l - 1) * (l - 2) / 2;
+    return HEADER_SIZE + cells * CELL_SIZE;
+  }
+
+  /**
+   * Prepares to checkpoint a run of optimalBST(). If the file holds a checkpoint of the same
+   * engine, number of keys and probabilities, its diagonals are copied into the matrices, which
+   * must already hold the dummy keys. A checkpoint of anything else is discarded.
+   *
+   * @param obst The engine about to fill its matrices.
+   * @param fingerprint Fingerprint of the engine and the probabilities.
+   * @return The last diagonal restored, or 0 if the run starts from scratch.
+   * @throws IOException if the file cannot be read, or is not a checkpoint file.
+   */
+  int start(OBSTDouble obst, long fingerprint) throws IOException {
+    this.obst = obst;
+    this.n = obst.n;
+    this.fingerprint = fingerprint;
+    channel = null;
+    pending = null;
+    failure = null;
+    queued = 0;
+    writer = Executors.newSingleThreadExecutor(task -> {
+      Thread thread = new Thread(task, "obst-checkpoint");
+      thread.setDaemon(true);
+      return thread;
+    });
+
+    if (file.isFile() && file.length() > 0) {
+      channel = FileChannel.open(file.toPath(), StandardOpenOption.READ,
+          StandardOpenOption.WRITE);
+      queued = restore();
+    }
+    lastCheckpoint = System.nanoTime();
+    return queued;
+  }
+
+  /**
+   * Reads the header and, if it matches the run, the diagonals it counts.
+   *
+   * @return The last diagonal restored.
+   */
+  private int restore() throws IOException {
+    ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+    readFully(header, 0);
+    if (header.getInt(0) != MAGIC) {
+      channel.close();
+      channel = null;
+      throw new IOException(file + " is not a checkpoint file.");
+    }
+    if (header.getInt(4) != VERSION) {
+      channel.close();
+      channel = null;
+      throw new IOException("Unsupported checkpoint file version " + header.getInt(4) + ".");
+    }
+
+    int last = header.getInt(12);
+    if (header.getInt(8) != n || header.getLong(16) != fingerprint || last < 0 || last > n
+        || channel.size() < offset(last + 1)) {
+
+      // A checkpoint of a different run, or a damaged one: start again.
+      channel.truncate(0);
+      writeHeader(0);
+      return 0;
+    }
+
+    ByteBuffer buffer = ByteBuffer.allocate(n * CELL_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+    for (int l = 1; l <= last; l++) {
+      int cells = n - l + 1;
+      buffer.clear().limit(cells * CELL_SIZE);
+      readFully(buffer, offset(l));
+
+      int eStart = 0;
+      int wStart = cells * Double.BYTES;
+      int rootStart = 2 * cells * Double.BYTES;
+      for (int i = 1; i <= cells; i++) {
+        int j = i + l - 1;
+        obst.e.set(i, j, buffer.getDouble(eStart + (i - 1) * Double.BYTES));
+        obst.w.set(i, j, buffer.getDouble(wStart + (i - 1) * Double.BYTES));
+        obst.root.set(i, j, buffer.getInt(rootStart + (i - 1) * Integer.BYTES));
+      }
+    }
+
+    // Drop whatever a checkpoint that never finished left after the last complete diagonal.
+    channel.truncate(offset(last + 1));
+    return last;
+  }
+
+  /**
+   * Called by the engine each time it finishes diagonal l. Hands the diagonals finished since the
+   * last checkpoint to the writer, if a checkpoint is due and the writer is free.
+   *
+   * @param l The diagonal just finished.
+   */
+  void diagonalFinished(int l) {
+    if (failure != null) {
+      return;
+    }
+    if (pending != null) {
+      if (!pending.isDone()) {
+        return;
+      }
+      collect();
+      if (failure != null) {
+        return;
+      }
+    }
+    long now = System.nanoTime();
+    if (now - lastCheckpoint < intervalNanos) {
+      return;
+    }
+
+    int from = queued + 1;
+    queued = l;
+    lastCheckpoint = now;
+    pending = writer.submit(() -> {
+      write(from, l);
+      return null;
+    });
+  }
+
+  /**
+   * Waits for the checkpoint being written, if any, and keeps its error.
+   */
+  private void collect() {
+    try {
+      pending.get();
+    } catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      failure = (cause instanceof IOException) ? (IOException) cause : new IOException(cause);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      failure = new IOException("Interrupted while writing a checkpoint.", e);
+    }
+    pending = null;
+  }
+
+  /**
+   * Writes diagonals from to to and then a header that counts them. Runs on the writer thread.
+   */
+  private void write(int from, int to) throws IOException {
+    if (channel == null) {
+      channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE,
+          StandardOpenOption.READ, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+      writeHeader(0);
+    }
+
+    ByteBuffer buffer = ByteBuffer.allocate(n * CELL_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+    for (int l = from; l <= to; l++) {
+      int cells = n - l + 1;
+      buffer.clear();
+      for (int i = 1; i <= cells; i++) {
+        buffer.putDouble(obst.e.get(i, i + l - 1));
+      }
+      for (int i = 1; i <= cells; i++) {
+        buffer.putDouble(obst.w.get(i, i + l - 1));
+      }
+      for (int i = 1; i <= cells; i++) {
+        buffer.putInt(obst.root.get(i, i + l - 1));
+      }
+      buffer.flip();
+      writeFully(buffer, offset(l));
+    }
+    channel.force(false);
+
+    writeHeader(to);
+    channel.force(false);
+  }
+
+  /**
+   * Writes a header counting diagonals 1 to last.
+   */
+  private void writeHeader(int last) throws IOException {
+    ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+    header.putInt(MAGIC);
+    header.putInt(VERSION);
+    header.putInt(n);
+    header.putInt(last);
+    header.putLong(fingerprint);
+    header.position(0);
+    writeFully(header, 0);
+  }
+
+  private void readFully(ByteBuffer buffer, long position) throws IOException {
+    while (buffer.hasRemaining()) {
+      int read = channel.read(buffer, position);
+      if (read < 0) {
+        throw new IOException(file + " ends in the middle of a checkpoint.");
+      }
+      position += read;
+    }
+  }
+
+  private void writeFully(ByteBuffer buffer, long position) throws IOException {
+    while (buffer.hasRemaining()) {
+      position += channel.write(buffer, position);
+    }
+  }
+
+  /**
+   * Called once the matrices are complete. Waits for the checkpoint being written, if any, then
+   * deletes the file, which is no longer needed.
+   *
+   * @throws IOException if a checkpoint could not be written. The matrices are complete anyway.
+   */
+  void finish() throws IOException {
+    stop();
+    if (failure != null) {
+      throw failure;
+    }
+    if (file.exists() && !file.delete()) {
+      throw new IOException("Could not delete " + file + ".");
+    }
+  }
+
+  /**
+   * Called if the run fails. Waits for the checkpoint being written, if any, and leaves the file
+   * for the next run to resume from.
+   */
+  void abort() {
+    try {
+      stop();
+    } catch (IOException e) {
+      // The run has already failed; the last complete checkpoint is still in the file.
+    }
+  }
+
+  /**
+   * Waits for the writer to finish, stops its thread and closes the file.
+   */
+  private void stop() throws IOException {
+    if (pending != null) {
+      collect();
+    }
+    writer.shutdown();
+    obst = null;
+    if (channel != null) {
+      channel.close();
+      channel = null;
+    }
+  }
+}
@@ -1,9 +1,86 @@
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Arrays;
+
 /**
- * Extends OBST to perform operations on double values. Note that generics do not allow for
- * double primitives, so we box a primitive in a Double object, then unbox it before performing
- * computationally heavy operations.
+ * Extends OBST to perform operations on double values. The probabilities are taken as double
+ * primitives, and the e and w matrices are kept as packed double primitives, which getE() and
+ * getW() return as they are. Nothing is boxed along the way.
+ *
+ * For callers that hold their probabilities as Double arrays, or want the matrices as Double 2D
+ * arrays, every constructor has a Double[] twin that unboxes p and q once, and getBoxedE() and
+ * getBoxedW() box a copy of the matrices. Boxing a matrix allocates a Double for each of its
+ * (n + 1)(n + 2) / 2 cells, so it is only worth doing for small key sets.
  */
-public class OBSTDouble extends OBST<Double> {
+public class OBSTDouble extends OBST<TriangularDoubleMatrix> {
+
+  /**
+   * Expected cost of searching for keys within a given range.
+   */
+  TriangularDoubleMatrix e;
+
+  /**
+   * @return Packed matrix representing the expected cost of searching within a range of keys.
+   */
+  @Override
+  public TriangularDoubleMatrix getE() {return e;}
+
+  /**
+   * @return Boxed 2D array representing the expected cost of searching within a range of keys.
+   */
+  public Double[][] getBoxedE() {return boxDoubleMatrix(e);}
+
+  /**
+   * Probability of searching for any key in a given range.
+   */
+  TriangularDoubleMatrix w;
+
+  /**
+   * @return Packed matrix representing the probability of searching for a key in a range of keys.
+   */
+  @Override
+  public TriangularDoubleMatrix getW() {return w;}
+
+  /**
+   * @return The expected cost of searching the tree calculated by optimalBST(), i.e. e[1][n].
+   */
+  public double getExpectedCost() {
+    return (alphabeticTree != null) ? alphabeticTree.getCost() : e.get(1, n);
+  }
+
+  /**
+   * @return Boxed 2D array representing the probability of searching for a key in a range of keys.
+   */
+  public Double[][] getBoxedW() {return boxDoubleMatrix(w);}
+
+  /**
+   * The optimal alphabetic tree, if optimalBST() found that every p is 0. The matrices are not
+   * calculated in that case, and getE(), getW() and getRoot() return null.
+   */
+  GarsiaWachs alphabeticTree;
+
+  /**
+   * Probabilities for all real keys.
+   */
+  double[] pValues;
+
+  /**
+   * Probabilities for all dummy keys.
+   */
+  double[] qValues;
+
+  /**
+   * Saves the progress of optimalBST() while it runs, or null if it is not saved.
+   */
+  private OBSTCheckpoint checkpoint;
+
+  /**
+   * The first diagonal fillMatrices() calculates. Every shorter diagonal was restored from a
+   * checkpoint.
+   */
+  int firstDiagonal = 1;
 
   /**
    * @param keys Key set to use to compute and construct the optimal binary search tree.
@@ -11,13 +88,137 @@ public class OBSTDouble extends OBST<Double> {
    * @param q Probabilities of searching for keys that don't exist in the key set.
    * @param n Number of keys.
    */
-  public OBSTDouble(int[] keys, Double[] p, Double[] q, int n) {
+  public OBSTDouble(int[] keys, double[] p, double[] q, int n) {
     this.keys = keys;
-    this.p = p;
-    this.q = q;
+    this.pValues = p;
+    this.qValues = q;
     this.n = n;
+  }
+
+  /**
+   * Unboxes p and q once, for callers that hold them as Double arrays.
+   *
+   * @param keys Key set to use to compute and construct the optimal binary search tree.
+   * @param p Probabilities of searching for each key in the key set.
+   * @param q Probabilities of searching for keys that don't exist in the key set.
+   * @param n Number of keys.
+   */
+  public OBSTDouble(int[] keys, Double[] p, Double[] q, int n) {
+    this(keys, unboxDoubleArray(p), unboxDoubleArray(q), n);
+  }
+
+  /**
+   * @return Probabilities for all real keys.
+   */
+  public double[] getP() {return pValues;}
+
+  /**
+   * @return Probabilities for all dummy keys.
+   */
+  public double[] getQ() {return qValues;}
+
+  /**
+   * Stores the e, w and root matrices in memory-mapped files in the given directory instead of on
+   * the heap. This lets optimalBST() handle key sets whose matrices are larger than the heap, and
+   * leaves the matrices on disk afterwards, where openMappedMatrices() can reuse them. Any file
+   * from a previous run with the same number of keys is replaced. If every p is 0, optimalBST()
+   * calculates no matrices and closes these instead; see alphabeticTree.
+   *
+   * @param directory The directory to create the matrix files in.
+   * @throws IOException if the files cannot be created.
+   */
+  public void useMappedMatrices(File directory) throws IOException {
+    closeMappedMatrices();
+    e = MappedDoubleMatrix.create(mappedFile(directory, "ematrix"), n);
+    w = MappedDoubleMatrix.create(mappedFile(directory, "wmatrix"), n);
+    root = MappedIntMatrix.create(mappedFile(directory, "rootmatrix"), n);
+  }
+
+  /**
+   * Opens the e, w and root matrices left on disk by a previous run that called
+   * useMappedMatrices(). Once opened, constructOBST() can be called without calling optimalBST().
+   * The current matrices are only closed and replaced once all three files have been opened; if
+   * one cannot be, the current matrices are kept.
+   *
+   * @param directory The directory the matrix files were created in.
+   * @throws IOException if the files cannot be read or were calculated for a different n.
+   */
+  public void openMappedMatrices(File directory) throws IOException {
+    // Open all three files before touching the fields, so that a missing or mismatched file
+    // leaves the current matrices as they were and no file is left open.
+    MappedDoubleMatrix openedE = null;
+    MappedDoubleMatrix openedW = null;
+    MappedIntMatrix openedRoot = null;
+    try {
+      openedE = MappedDoubleMatrix.open(mappedFile(directory, "ematrix"));
+      openedW = MappedDoubleMatrix.open(mappedFile(directory, "wmatrix"));
+      openedRoot = MappedIntMatrix.open(mappedFile(directory, "rootmatrix"));
+
+      if (openedE.getN() != n || openedW.getN() != n || openedRoot.getN() != n) {
+        throw new IOException("The matrices in " + directory + " were not calculated for " + n
+            + " keys.");
+      }
+    } catch (IOException | RuntimeException ex) {
+      for (Closeable matrix : new Closeable[] {openedE, openedW, openedRoot}) {
+        if (matrix != null) {
+          try {
+            matrix.close();
+          } catch (IOException closeEx) {
+            ex.addSuppressed(closeEx);
+          }
+        }
+      }
+      throw ex;
+    }
 
-    root = new int[n + 1][n + 1];
+    closeMappedMatrices();
+    e = openedE;
+    w = openedW;
+    root = openedRoot;
+  }
+
+  /**
+   * Writes the mapped matrices back to disk and closes their files. Does nothing if the matrices
+   * are on the heap.
+   *
+   * @throws IOException if a file cannot be closed.
+   */
+  public void closeMappedMatrices() throws IOException {
+    for (Object matrix : new Object[] {e, w, root}) {
+      if (matrix instanceof Closeable) {
+        ((Closeable) matrix).close();
+      }
+    }
+  }
+
+  /**
+   * Saves the progress of optimalBST() to a file every so often, and resumes from that file if it
+   * already holds the progress of an earlier run with the same engine, keys and probabilities.
+   * A run that crashes or is stopped can then be started again and only calculates the diagonals
+   * the last checkpoint did not save; the result is the same, to the bit, as a run that was never
+   * stopped. The checkpoints are written on a background thread, and the file is deleted once
+   * optimalBST() finishes. OBSTCheckpoint describes the file format.
+   *
+   * Engines that do not fill the matrices one diagonal at a time (OBSTDoubleTiled) and engines
+   * that do not calculate them at all (OBSTDoubleApprox) neither save nor resume checkpoints.
+   *
+   * If a checkpoint cannot be read or written, optimalBST() throws an UncheckedIOException; if
+   * writing failed, the matrices are complete regardless.
+   *
+   * @param file The file to save the checkpoints to, or null to stop saving them.
+   * @param intervalMillis The least time between two checkpoints, in milliseconds.
+   */
+  public void useCheckpoints(File file, long intervalMillis) {
+    checkpoint = (file == null) ? null : new OBSTCheckpoint(file, intervalMillis);
+  }
+
+  /**
+   * @param directory The directory holding the matrix files.
+   * @param name The name of the matrix, e.g. "ematrix".
+   * @return The file that holds the named matrix for this number of keys.
+   */
+  private File mappedFile(File directory, String name) {
+    return new File(directory, "output." + name + "." + n + ".keys.bin");
   }
 
   /**
@@ -43,58 +244,334 @@ public class OBSTDouble extends OBST<Double> {
    */
   public void optimalBST() {
 
-    // For more efficient computation, we unbox the Double objects before performing the
-    // computationally heavy algorithm.
-    double[] p = unboxDoubleArray(this.p);
-    double[] q = unboxDoubleArray(this.q);
+    // If no real key is ever searched for, this is the alphabetic tree problem, which has a much
+    // faster solution than filling the matrices. Should Garsia-Wachs fail to build a whole tree,
+    // the matrices are filled as usual. Otherwise any matrices from an earlier run no longer
+    // describe the tree, so they are dropped (and closed, if they are mapped), as on a new
+    // instance.
+    alphabeticTree = null;
+    if (allZero(pValues)) {
+      GarsiaWachs tree = new GarsiaWachs(qValues, 0, n);
+      if (tree.isComplete()) {
+        try {
+          closeMappedMatrices();
+        } catch (IOException ex) {
+          throw new UncheckedIOException(ex);
+        }
+        e = null;
+        w = null;
+        root = null;
+        alphabeticTree = tree;
+        return;
+      }
+    }
 
-    double[][] e = new double[n + 2][n + 1];
-    double[][] w = new double[n + 2][n + 1];
+    initialize();
+    firstDiagonal = 1;
+    if (checkpoint == null || !fillsDiagonals()) {
+      fillMatrices();
+      return;
+    }
 
-    // Fill the bottom of two 2D matrices with the dummy key values. e will hold the expected cost
-    // of searching through a range of keys, and w will hold the probabilities of searching for a
-    // key within a range of keys.
-    for (int i = 1; i <= n + 1; i++) {
-      e[i][i - 1] = q[i - 1];
-      w[i][i - 1] = q[i - 1];
+    try {
+      firstDiagonal = checkpoint.start(this, checkpointFingerprint()) + 1;
+      if (firstDiagonal > 1) {
+        cellsRestored(firstDiagonal - 1);
+      }
+      fillMatrices();
+    } catch (IOException e) {
+      checkpoint.abort();
+      throw new UncheckedIOException(e);
+    } catch (RuntimeException | Error e) {
+
+      // Leave the last checkpoint in the file, so the run can be resumed.
+      checkpoint.abort();
+      throw e;
+    }
+    try {
+      checkpoint.finish();
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  /**
+   * Returns whether fillMatrices() calculates the matrices one diagonal at a time, starting from
+   * firstDiagonal and calling diagonalFinished() after each, so that its progress can be saved and
+   * resumed with checkpoints.
+   *
+   * @return True for the classic engine and every engine that keeps its fillMatrices().
+   */
+  boolean fillsDiagonals() {
+    return true;
+  }
+
+  /**
+   * Called by fillMatrices() once every cell of diagonal l is final.
+   *
+   * @param l The length of the ranges on the diagonal.
+   */
+  void diagonalFinished(int l) {
+    if (checkpoint != null) {
+      checkpoint.diagonalFinished(l);
+    }
+  }
+
+  /**
+   * Called by optimalBST() after diagonals 1 to lastDiagonal have been copied from a checkpoint
+   * into the matrices, and before fillMatrices(). The classic engine keeps nothing else that
+   * depends on the cells.
+   *
+   * @param lastDiagonal The last diagonal copied from the checkpoint.
+   */
+  void cellsRestored(int lastDiagonal) {
+  }
+
+  /**
+   * Returns a fingerprint of the engine and the probabilities, which a checkpoint must match to
+   * be resumed. Engines whose results depend on anything else mix it in.
+   *
+   * @return A 64-bit hash of the engine's class name and every probability.
+   */
+  long checkpointFingerprint() {
+    long hash = getClass().getName().hashCode();
+    for (double value : pValues) {
+      hash = hash * 0x100000001B3L + Double.doubleToLongBits(value);
     }
+    for (double value : qValues) {
+      hash = hash * 0x100000001B3L + Double.doubleToLongBits(value);
+    }
+    return hash;
+  }
+
+  /**
+   * Changes some of the search probabilities and brings the matrices up to date without running
+   * optimalBST() from scratch. e[i][j], w[i][j] and root[i][j] only depend on the probabilities in
+   * the range [i..j], so only the cells whose range covers a changed probability are calculated
+   * again; every other cell, including the roots the Knuth engines use to bound their search, is
+   * reused as it is. The result is the same as calling optimalBST() with the new probabilities.
+   *
+   * Changing the probability of key k affects the cells with i <= k <= j, and changing dummy key
+   * k affects the cells with i <= k + 1 and j >= k, so changes near either end of the key set are
+   * much cheaper than changes in the middle.
+   *
+   * If optimalBST() has not calculated the matrices yet, or the tree is (or becomes) the
+   * alphabetic tree solved by Garsia-Wachs, optimalBST() is simply run again. Either way, call
+   * constructOBST() afterwards to rebuild the trees.
+   *
+   * The new probabilities are written into the arrays returned by getP() and getQ().
+   *
+   * @param keyIndexes The indexes in p of the key probabilities to change.
+   * @param keyProbabilities The new probability for each index in keyIndexes.
+   * @param dummyIndexes The indexes in q of the dummy key probabilities to change.
+   * @param dummyProbabilities The new probability for each index in dummyIndexes.
+   */
+  public void updateProbabilities(int[] keyIndexes, double[] keyProbabilities,
+      int[] dummyIndexes, double[] dummyProbabilities) {
+
+    if (keyIndexes.length != keyProbabilities.length
+        || dummyIndexes.length != dummyProbabilities.length) {
+      throw new IllegalArgumentException("Each index needs exactly one new probability.");
+    }
+    for (int index : keyIndexes) {
+      if (index < 0 || index >= n) {
+        throw new IllegalArgumentException("Key index " + index + " is not between 0 and "
+            + (n - 1) + ".");
+      }
+    }
+    for (int index : dummyIndexes) {
+      if (index < 0 || index > n) {
+        throw new IllegalArgumentException("Dummy key index " + index + " is not between 0 and "
+            + n + ".");
+      }
+    }
+
+    // The lowest j whose cells need calculating again in each row i. A change that affects the
+    // cells with i <= a and j >= b lowers the bound of rows 1 through a to b.
+    int[] lowestChangedJ = new int[n + 2];
+    Arrays.fill(lowestChangedJ, n + 1);
+
+    for (int c = 0; c < keyIndexes.length; c++) {
+      int k = keyIndexes[c] + 1;
+      pValues[k - 1] = keyProbabilities[c];
+      lowestChangedJ[k] = Math.min(lowestChangedJ[k], k);
+    }
+    for (int c = 0; c < dummyIndexes.length; c++) {
+      int k = dummyIndexes[c];
+      qValues[k] = dummyProbabilities[c];
+      lowestChangedJ[k + 1] = Math.min(lowestChangedJ[k + 1], k);
+    }
+
+    if (e == null || alphabeticTree != null || allZero(pValues)) {
+      optimalBST();
+      return;
+    }
+    probabilitiesUpdated();
+
+    // Rows are recalculated from the bottom up, and each row from left to right. Every cell that
+    // computeCell() reads is then either in a lower row, earlier in the same row, or unchanged.
+    for (int i = n; i >= 1; i--) {
+      lowestChangedJ[i] = Math.min(lowestChangedJ[i], lowestChangedJ[i + 1]);
+    }
+    for (int i = n + 1; i >= 1; i--) {
+      if (lowestChangedJ[i] <= i - 1) {
+        e.set(i, i - 1, qValues[i - 1]);
+        w.set(i, i - 1, qValues[i - 1]);
+      }
+      for (int j = Math.max(lowestChangedJ[i], i); j <= n; j++) {
+        computeCell(i, j);
+      }
+    }
+  }
+
+  /**
+   * Called by updateProbabilities() once pValues and qValues hold the new probabilities, before
+   * any cell is calculated again. The classic engine keeps nothing else that depends on them.
+   */
+  void probabilitiesUpdated() {
+  }
+
+  /**
+   * Calculates every cell of the matrices once initialize() has filled in the dummy keys.
+   */
+  void fillMatrices() {
 
     // When l=1, we iterate e[i, i] and w[i, i] for [1..n].
     // When l=2, we iterate e[i, i+1] and w[i, i+1] for [1..n-1]
     // etc
-    for (int l = 1; l <= n; l++) {
+    for (int l = firstDiagonal; l <= n; l++) {
       for (int i = 1; i <= (n - l + 1); i++) {
-        int j = i + l - 1;
+        computeCell(i, i + l - 1);
+      }
+      diagonalFinished(l);
+    }
+  }
+
+  /**
+   * Prepares the matrices for optimalBST(). This allocates e, w and root on the heap (unless
+   * useMappedMatrices() has already created them), and fills in the dummy keys, which are the
+   * only cells that do not depend on other cells.
+   */
+  void initialize() {
+    if (e == null) {
+      e = new HeapDoubleMatrix(n);
+      w = new HeapDoubleMatrix(n);
+      root = new HeapIntMatrix(n);
+    }
+
+    // Fill the bottom of two 2D matrices with the dummy key values. e will hold the expected cost
+    // of searching through a range of keys, and w will hold the probabilities of searching for a
+    // key within a range of keys.
+    for (int i = 1; i <= n + 1; i++) {
+      e.set(i, i - 1, qValues[i - 1]);
+      w.set(i, i - 1, qValues[i - 1]);
+    }
+  }
 
-        // Set the current expected cost to a max value for later comparison.
-        e[i][j] = Double.MAX_VALUE;
+  /**
+   * Calculates e[i][j], w[i][j] and root[i][j]. Every cell of a shorter range must already have
+   * been calculated, but cells of the same length may be calculated in any order (or at the same
+   * time), since they never read each other.
+   *
+   * @param i The lower bound of the range.
+   * @param j The upper bound of the range.
+   */
+  void computeCell(int i, int j) {
 
-        // Calculates the weighted possibility of searching for a key in range [i..j].
-        w[i][j] = w[i][j - 1] + p[j - 1] + q[j];
+    // Calculates the weighted possibility of searching for a key in range [i..j].
+    double wij = w.get(i, j - 1) + pValues[j - 1] + qValues[j];
+    w.set(i, j, wij);
 
-        // Tries each candidate index r to determine which key to use as the root.
-        for (int r = i; r <= j; r++) {
+    // Set the current expected cost to a max value for later comparison.
+    double eij = Double.MAX_VALUE;
+    int rootij = 0;
 
-          // Add the probability of the candidate index shortened by one on the upper bound to the
-          // probability of the candidate index shortened by one on the lower bound and add
-          // the weighted probability.
-          double t = e[i][r - 1] + e[r + 1][j] + w[i][j];
+    // Tries each candidate index r to determine which key to use as the root. The classic
+    // engine tries every key in the range; subclasses may narrow the candidates.
+    int highest = highestRoot(i, j);
+    for (int r = lowestRoot(i, j); r <= highest; r++) {
 
-          // If this results in a lower cost than the currently-stored key, store its index to the.
-          // root. This is why we set e[i][j] to a maximum value - so the first comparison will
-          // always be true.
-          if (t < e[i][j]) {
-            e[i][j] = t;
-            root[i][j] = r;
-          }
-        }
+      // Add the probability of the candidate index shortened by one on the upper bound to the
+      // probability of the candidate index shortened by one on the lower bound and add
+      // the weighted probability.
+      double t = e.get(i, r - 1) + e.get(r + 1, j) + wij;
+
+      // If this results in a lower cost than the currently-stored key, store its index to the.
+      // root. This is why we start e[i][j] at a maximum value - so the first comparison will
+      // always be true.
+      if (t < eij) {
+        eij = t;
+        rootij = r;
       }
     }
 
-    // Now that the computation is done, we can convert the matrices to Doubles to store in the
-    // parent class.
-    this.e = boxDoubleMatrix(e);
-    this.w = boxDoubleMatrix(w);
+    e.set(i, j, eij);
+    root.set(i, j, rootij);
+  }
+
+  /**
+   * Constructs the tree calculated by optimalBST(). When every p is 0, the tree comes from the
+   * Garsia-Wachs algorithm rather than the root matrix, and any range other than the whole key set
+   * is solved again from its dummy keys.
+   *
+   * @param i The lower bound of the range.
+   * @param j The upper bound of the range.
+   */
+  @Override
+  public void constructOBST(int i, int j) {
+    if (alphabeticTree == null) {
+      super.constructOBST(i, j);
+    } else {
+      GarsiaWachs tree = (i == 1 && j == n) ? alphabeticTree : new GarsiaWachs(qValues, i - 1, j);
+      if (!tree.isComplete()) {
+
+        // Solve every range with the matrices instead, as optimalBST() does for the whole key set.
+        alphabeticTree = null;
+        initialize();
+        firstDiagonal = 1;
+        fillMatrices();
+        super.constructOBST(i, j);
+        return;
+      }
+      buildTrees(i, j, tree.getRoot(), tree.getLeft(), tree.getRight());
+    }
+  }
+
+  /**
+   * @param arr Array to check.
+   * @return True if every element of the array is 0.
+   */
+  static boolean allZero(double[] arr) {
+    for (double v : arr) {
+      if (v != 0) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Returns the lowest candidate root to try for the key range [i..j]. The classic engine tries
+   * every key in the range, so this is always i.
+   *
+   * @param i The lower bound of the range.
+   * @param j The upper bound of the range.
+   * @return The lowest index that may be the optimal root of the range.
+   */
+  int lowestRoot(int i, int j) {
+    return i;
+  }
+
+  /**
+   * Returns the highest candidate root to try for the key range [i..j]. The classic engine tries
+   * every key in the range, so this is always j.
+   *
+   * @param i The lower bound of the range.
+   * @param j The upper bound of the range.
+   * @return The highest index that may be the optimal root of the range.
+   */
+  int highestRoot(int i, int j) {
+    return j;
   }
 
   /**
@@ -103,7 +580,7 @@ public class OBSTDouble extends OBST<Double> {
    * @param arr Double array to unbox.
    * @return Unboxed double array.
    */
-  public double[] unboxDoubleArray(Double[] arr) {
+  public static double[] unboxDoubleArray(Double[] arr) {
     double[] newArr = new double[arr.length];
     for (int i = 0; i < arr.length; i++) {
       newArr[i] = arr[i];
@@ -112,16 +589,21 @@ public class OBSTDouble extends OBST<Double> {
   }
 
   /**
-   *Boxes a double 2D array to a Double 2D array.
+   * Boxes a packed double matrix to a Double 2D array. Cells outside of the packed triangle are
+   * left null.
    *
-   * @param arr double 2D array to box.
+   * @param matrix Packed double matrix to box.
    * @return Boxed Double 2D array.
    */
-  public Double[][] boxDoubleMatrix(double[][] arr) {
-    Double[][] newArr = new Double[arr.length][arr[0].length];
-    for (int i = 0; i < arr.length; i++) {
-      for (int j = 0; j < arr[0].length; j++) {
-        newArr[i][j] = arr[i][j];
+  public Double[][] boxDoubleMatrix(TriangularDoubleMatrix matrix) {
+    if (matrix == null) {
+      return null;
+    }
+
+    Double[][] newArr = new Double[n + 2][n + 1];
+    for (int i = 1; i <= n + 1; i++) {
+      for (int j = i - 1; j <= n; j++) {
+        newArr[i][j] = matrix.get(i, j);
       }
     }
     return newArr;
@@ -0,0 +1,236 @@
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Extends OBSTDouble to build a nearly optimal binary search tree in O(n log n) time and O(n)
+ * memory, for key sets far too large for any of the O(n^2) engines.
+ *
+ * Instead of trying every root of every range, we pick the root of each range by bisection:
+ * the key r that best balances the weight of the range, i.e. that minimizes the difference between
+ * w[i][r-1] (everything to its left) and w[r+1][j] (everything to its right). With prefix sums of
+ * p and q, both weights take O(1) to calculate and they move in opposite directions as r grows, so
+ * the best r is found by binary search in O(log n). Mehlhorn showed that trees built this way have
+ * an expected cost within a small additive constant of the entropy of p and q, which is itself a
+ * lower bound (up to a constant factor) on the cost of the optimal tree.
+ *
+ * No e, w or root matrix is calculated, so getE(), getW() and getRoot() return null. The expected
+ * cost of the tree that was built is available from getExpectedCost().
+ */
+public class OBSTDoubleApprox extends OBSTDouble {
+
+  /**
+   * weightThrough[k] is the sum of q[0..k] and p[1..k], i.e. the weight of every key and dummy key
+   * up to and including key k and dummy key k.
+   */
+  private double[] weightThrough;
+
+  /**
+   * The key index of the left and right child of each key index, or 0 if there is none.
+   */
+  private int[] left;
+  private int[] right;
+
+  /**
+   * The key index of the root of the tree, or 0 if the tree is empty.
+   */
+  private int treeRoot;
+
+  /**
+   * The range of keys that left, right and treeRoot currently describe.
+   */
+  private int shapeLow;
+  private int shapeHigh;
+
+  /**
+   * The expected cost of searching the tree that was built.
+   */
+  private double expectedCost;
+
+  /**
+   * @param keys Key set to use to compute and construct the binary search tree.
+   * @param p Probabilities of searching for each key in the key set.
+   * @param q Probabilities of searching for keys that don't exist in the key set.
+   * @param n Number of keys.
+   */
+  public OBSTDoubleApprox(int[] keys, double[] p, double[] q, int n) {
+    super(keys, p, q, n);
+  }
+
+  /**
+   * Unboxes p and q once, for callers that hold them as Double arrays.
+   *
+   * @param keys Key set to use to compute and construct the binary search tree.
+   * @param p Probabilities of searching for each key in the key set.
+   * @param q Probabilities of searching for keys that don't exist in the key set.
+   * @param n Number of keys.
+   */
+  public OBSTDoubleApprox(int[] keys, Double[] p, Double[] q, int n) {
+    this(keys, unboxDoubleArray(p), unboxDoubleArray(q), n);
+  }
+
+  /**
+   * @return The expected cost of searching the tree built by optimalBST(), or by the last call to
+   *     constructOBST() for a different range.
+   */
+  @Override
+  public double getExpectedCost() {return expectedCost;}
+
+  /**
+   * Does nothing: no matrices are calculated, so there is nothing to store in the files, and
+   * creating them would only leave three empty O(n^2) files behind.
+   *
+   * @param directory Ignored.
+   */
+  @Override
+  public void useMappedMatrices(File directory) throws IOException {
+  }
+
+  /**
+   * Calculates the shape of a nearly optimal binary search tree over the whole key set, along
+   * with its expected cost.
+   */
+  @Override
+  public void optimalBST() {
+    weightThrough = new double[n + 1];
+    weightThrough[0] = qValues[0];
+    for (int k = 1; k <= n; k++) {
+      weightThrough[k] = weightThrough[k - 1] + pValues[k - 1] + qValues[k];
+    }
+
+    left = new int[n + 1];
+    right = new int[n + 1];
+    treeRoot = bisect(1, n);
+  }
+
+  /**
+   * Constructs the tree calculated by optimalBST(). Any other range is bisected from scratch
+   * first, which takes O(n log n) time and replaces the expected cost with that of the new range.
+   *
+   * @param i The lower bound of the range.
+   * @param j The upper bound of the range.
+   */
+  @Override
+  public void constructOBST(int i, int j) {
+    if (i != shapeLow || j != shapeHigh) {
+      treeRoot = bisect(i, j);
+    }
+    buildTrees(i, j, treeRoot, left, right);
+  }
+
+  /**
+   * Returns w[i][j], the weight of keys i through j and dummy keys i-1 through j.
+   */
+  private double weight(int i, int j) {
+    return weightThrough[j] - weightThrough[i - 1] + qValues[i - 1];
+  }
+
+  /**
+   * Bisects the range [i..j] and every range below it, filling in left and right and setting
+   * expectedCost to the expected cost of the resulting tree. Like constructOBST(), this keeps the
+   * ranges still waiting for a root on an explicit stack rather than recursing.
+   *
+   * @param i The lower bound of the range.
+   * @param j The upper bound of the range.
+   * @return The key index of the root of the range, or 0 if the range is empty.
+   */
+  private int bisect(int i, int j) {
+    shapeLow = i;
+    shapeHigh = j;
+    expectedCost = 0;
+    if (i > j) {
+      expectedCost = qValues[i - 1];
+      return 0;
+    }
+
+    // Each stack entry is a range, its depth in the tree, and the key index of the parent it hangs
+    // from: positive for a left subtree, negative for a right subtree, 0 for the root.
+    int[] stackLow = new int[n + 1];
+    int[] stackHigh = new int[n + 1];
+    int[] stackDepth = new int[n + 1];
+    int[] stackParent = new int[n + 1];
+    int top = 0;
+    int rangeRoot = 0;
+
+    stackLow[top] = i;
+    stackHigh[top] = j;
+    stackDepth[top] = 0;
+    stackParent[top] = 0;
+    top++;
+
+    while (top > 0) {
+      top--;
+      int low = stackLow[top];
+      int high = stackHigh[top];
+      int depth = stackDepth[top];
+      int parent = stackParent[top];
+      int r = balancedRoot(low, high);
+
+      if (parent > 0) {
+        left[parent] = r;
+      } else if (parent < 0) {
+        right[-parent] = r;
+      } else {
+        rangeRoot = r;
+      }
+      left[r] = 0;
+      right[r] = 0;
+
+      // A key at depth d takes d + 1 comparisons to find. An empty subtree is a dummy key one level
+      // further down.
+      expectedCost += pValues[r - 1] * (depth + 1);
+      if (r > low) {
+        stackLow[top] = low;
+        stackHigh[top] = r - 1;
+        stackDepth[top] = depth + 1;
+        stackParent[top] = r;
+        top++;
+      } else {
+        expectedCost += qValues[r - 1] * (depth + 2);
+      }
+      if (r < high) {
+        stackLow[top] = r + 1;
+        stackHigh[top] = high;
+        stackDepth[top] = depth + 1;
+        stackParent[top] = -r;
+        top++;
+      } else {
+        expectedCost += qValues[r] * (depth + 2);
+      }
+    }
+
+    return rangeRoot;
+  }
+
+  /**
+   * Finds the root r of [i..j] that minimizes the difference between w[i][r-1] and w[r+1][j].
+   * The left weight only grows and the right weight only shrinks as r grows, so we binary search
+   * for the first r whose left weight is at least its right weight, then check whether the key
+   * just before it is better balanced.
+   *
+   * @param i The lower bound of the range.
+   * @param j The upper bound of the range.
+   * @return The best balanced root of the range.
+   */
+  private int balancedRoot(int i, int j) {
+    int low = i;
+    int high = j;
+    while (low < high) {
+      int mid = (low + high) >>> 1;
+      if (weight(i, mid - 1) >= weight(mid + 1, j)) {
+        high = mid;
+      } else {
+        low = mid + 1;
+      }
+    }
+
+    int r = low;
+    if (r > i) {
+      double imbalance = Math.abs(weight(i, r - 1) - weight(r + 1, j));
+      double previous = Math.abs(weight(i, r - 2) - weight(r, j));
+      if (previous <= imbalance) {
+        r--;
+      }
+    }
+    return r;
+  }
+}
@@ -0,0 +1,229 @@
+/**
+ * Extends OBSTDoubleKnuth to calculate the optimal binary search tree with doubles that do not
+ * drift, as a middle ground between OBSTDouble and OBSTBigDecimal.
+ *
+ * OBSTDouble builds w[i][j] by adding p and q to w[i][j-1] one at a time, so its rounding error
+ * grows with the length of the range, and two candidate roots whose costs are equal on paper can
+ * come out a few ulps apart in either direction. Which of them becomes the root then depends on
+ * the order the additions happened to be done in. This engine removes both problems:
+ *
+ * - Every weight is calculated from prefix sums of p and q kept as double-double numbers (a
+ *   double plus the rounding error it lost, as in Kahan/Neumaier summation), so w[i][j] is
+ *   accurate to the last bit however long the range is, and a short range at the end of the key
+ *   set loses nothing to the large prefix sums it is the difference of.
+ *
+ * - The cost of each candidate root is the sum of three doubles, e[i][r-1] + e[r+1][j] + w[i][j],
+ *   added with the error of both additions carried along, so it is rounded once instead of twice.
+ *
+ * - Candidate costs that are within a relative tolerance of each other are treated as a tie, and a
+ *   tie always goes to the lowest root. A later candidate only replaces the best root so far if it
+ *   is cheaper by more than the tolerance, so the last few bits of a cost never decide the tree.
+ *
+ * The candidates are narrowed with Knuth's monotonicity, as in OBSTDoubleKnuth, so the engine
+ * takes O(n^2) time and costs a few extra additions per candidate over OBSTDoubleKnuth.
+ */
+public class OBSTDoubleCompensated extends OBSTDoubleKnuth {
+
+  /**
+   * The default relative tolerance within which two costs are treated as equal. This is far
+   * above the rounding error of a compensated cost, and far below any difference between two
+   * costs that are not equal on paper for probabilities with up to 10 significant digits.
+   */
+  public static final double DEFAULT_TOLERANCE = 1e-12;
+
+  private final double tolerance;
+
+  /**
+   * prefixHigh[k] + prefixLow[k] is the sum of q[0..k] and p[1..k], i.e. the weight of every key
+   * and dummy key up to and including key k and dummy key k. prefixLow holds the rounding error
+   * of prefixHigh.
+   */
+  private double[] prefixHigh;
+  private double[] prefixLow;
+
+  /**
+   * @param keys Key set to use to compute and construct the optimal binary search tree.
+   * @param p Probabilities of searching for each key in the key set.
+   * @param q Probabilities of searching for keys that don't exist in the key set.
+   * @param n Number of keys.
+   */
+  public OBSTDoubleCompensated(int[] keys, double[] p, double[] q, int n) {
+    this(keys, p, q, n, DEFAULT_TOLERANCE);
+  }
+
+  /**
+   * Unboxes p and q once, for callers that hold them as Double arrays.
+   *
+   * @param keys Key set to use to compute and construct the optimal binary search tree.
+   * @param p Probabilities of searching for each key in the key set.
+   * @param q Probabilities of searching for keys that don't exist in the key set.
+   * @param n Number of keys.
+   */
+  public OBSTDoubleCompensated(int[] keys, Double[] p, Double[] q, int n) {
+    this(keys, unboxDoubleArray(p), unboxDoubleArray(q), n);
+  }
+
+  /**
+   * @param keys Key set to use to compute and construct the optimal binary search tree.
+   * @param p Probabilities of searching for each key in the key set.
+   * @param q Probabilities of searching for keys that don't exist in the key set.
+   * @param n Number of keys.
+   * @param tolerance The relative difference below which two costs are treated as equal, and the
+   *     lower root is chosen. 0 only treats exactly equal costs as a tie.
+   */
+  public OBSTDoubleCompensated(int[] keys, double[] p, double[] q, int n, double tolerance) {
+    super(keys, p, q, n);
+    if (!(tolerance >= 0 && tolerance < 1)) {
+      throw new IllegalArgumentException("The tolerance must be at least 0 and less than 1.");
+    }
+    this.tolerance = tolerance;
+  }
+
+  /**
+   * Unboxes p and q once, for callers that hold them as Double arrays.
+   *
+   * @param keys Key set to use to compute and construct the optimal binary search tree.
+   * @param p Probabilities of searching for each key in the key set.
+   * @param q Probabilities of searching for keys that don't exist in the key set.
+   * @param n Number of keys.
+   * @param tolerance The relative difference below which two costs are treated as equal, and the
+   *     lower root is chosen. 0 only treats exactly equal costs as a tie.
+   */
+  public OBSTDoubleCompensated(int[] keys, Double[] p, Double[] q, int n, double tolerance) {
+    this(keys, unboxDoubleArray(p), unboxDoubleArray(q), n, tolerance);
+  }
+
+  /**
+   * @return The relative difference below which two costs are treated as equal.
+   */
+  public double getTolerance() {return tolerance;}
+
+  /**
+   * Calculates the prefix sums of the probabilities before filling in the dummy keys.
+   */
+  @Override
+  void initialize() {
+    calculatePrefixSums();
+    super.initialize();
+  }
+
+  /**
+   * The prefix sums depend on every probability, so they are calculated again in full.
+   */
+  @Override
+  void probabilitiesUpdated() {
+    calculatePrefixSums();
+  }
+
+  /**
+   * The tolerance changes which roots are chosen, so a checkpoint must have been saved with the
+   * same one.
+   */
+  @Override
+  long checkpointFingerprint() {
+    return super.checkpointFingerprint() * 0x100000001B3L + Double.doubleToLongBits(tolerance);
+  }
+
+  /**
+   * Calculates e[i][j], w[i][j] and root[i][j] like OBSTDouble.computeCell(), but with compensated
+   * sums and the tolerance-aware tie-break.
+   *
+   * @param i The lower bound of the range.
+   * @param j The upper bound of the range.
+   */
+  @Override
+  void computeCell(int i, int j) {
+
+    // w[i][j] = prefix[j] - prefix[i-1] + q[i-1], in double-double.
+    double difference = prefixHigh[j] - prefixHigh[i - 1];
+    double differenceError = twoSumError(prefixHigh[j], -prefixHigh[i - 1], difference)
+        + (prefixLow[j] - prefixLow[i - 1]);
+    double sum = difference + qValues[i - 1];
+    double sumError = twoSumError(difference, qValues[i - 1], sum) + differenceError;
+    double wHigh = sum + sumError;
+    double wLow = sumError - (wHigh - sum);
+    w.set(i, j, wHigh);
+
+    double eij = Double.MAX_VALUE;
+    int rootij = 0;
+
+    int highest = highestRoot(i, j);
+    for (int r = lowestRoot(i, j); r <= highest; r++) {
+      double left = e.get(i, r - 1);
+      double right = e.get(r + 1, j);
+      double subtrees = left + right;
+      double t = subtrees + wHigh;
+      t += twoSumError(left, right, subtrees) + twoSumError(subtrees, wHigh, t) + wLow;
+
+      // Only a cost that is lower by more than the tolerance replaces the best root so far, so of
+      // any costs that are within the tolerance of each other, the lowest root wins.
+      if (t < eij - tolerance * eij) {
+        eij = t;
+        rootij = r;
+      }
+    }
+
+    e.set(i, j, eij);
+    root.set(i, j, rootij);
+  }
+
+  /**
+   * Roots chosen with a tolerance are not exactly monotonic: when two roots are within the
+   * tolerance of each other, root[i][j-1] may be the higher of the pair and root[i+1][j] the lower.
+   * The window then runs between the two, whichever way round they are.
+   */
+  @Override
+  int lowestRoot(int i, int j) {
+    return Math.min(super.lowestRoot(i, j), super.highestRoot(i, j));
+  }
+
+  /**
+   * See lowestRoot().
+   */
+  @Override
+  int highestRoot(int i, int j) {
+    return Math.max(super.lowestRoot(i, j), super.highestRoot(i, j));
+  }
+
+  /**
+   * Calculates prefixHigh and prefixLow with Neumaier's compensated summation: each addition's
+   * rounding error is worked out exactly and kept in prefixLow rather than lost.
+   */
+  private void calculatePrefixSums() {
+    prefixHigh = new double[n + 1];
+    prefixLow = new double[n + 1];
+    double high = qValues[0];
+    double low = 0;
+    prefixHigh[0] = high;
+
+    for (int k = 1; k <= n; k++) {
+      double sum = high + pValues[k - 1];
+      low += twoSumError(high, pValues[k - 1], sum);
+      high = sum;
+      sum = high + qValues[k];
+      low += twoSumError(high, qValues[k], sum);
+      high = sum;
+
+      // Fold the error back in so that prefixHigh is the correctly rounded sum.
+      double rounded = high + low;
+      low -= rounded - high;
+      high = rounded;
+      prefixHigh[k] = high;
+      prefixLow[k] = low;
+    }
+  }
+
+  /**
+   * Knuth's TwoSum: the exact rounding error of a floating point addition.
+   *
+   * @param a The first addend.
+   * @param b The second addend.
+   * @param sum a + b, rounded.
+   * @return The amount that was lost to rounding, i.e. a + b - sum, which is always a double.
+   */
+  private static double twoSumError(double a, double b, double sum) {
+    double bVirtual = sum - a;
+    double aVirtual = sum - bVirtual;
+    return (a - aVirtual) + (b - bVirtual);
+  }
+}
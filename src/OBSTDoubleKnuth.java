@@ -0,0 +1,61 @@
+/**
+ * Extends OBSTDouble to calculate the optimal binary search tree in O(n^2) time rather than
+ * O(n^3) time. The tree it finds is just as cheap as the classic engine's, but not always the
+ * same tree: when several candidate roots of a range tie for the lowest cost (e.g. when p and q
+ * are all equal, or every p is 0), the classic engine picks the lowest of them, while this engine
+ * picks the lowest one inside the Knuth window below, which can be a different key. Costs
+ * reached through a different root can also differ from the classic engine's in the last bit
+ * (a relative difference of around 1e-16), since they are added up in a different order.
+ *
+ * The classic engine tries every key in [i..j] as the root of that range. Knuth showed that the
+ * optimal roots are monotonic: the root of [i..j] is never to the left of the root of [i..j-1]
+ * and never to the right of the root of [i+1..j]. That is,
+ *
+ *   root[i][j-1] <= root[i][j] <= root[i+1][j]
+ *
+ * Both of those ranges are one key shorter than [i..j], so they have already been calculated by
+ * the time we reach [i..j]. Summed over a whole diagonal, the width of these windows telescopes
+ * to at most n, so each diagonal costs O(n) and the whole table costs O(n^2).
+ */
+public class OBSTDoubleKnuth extends OBSTDouble {
+
+  /**
+   * @param keys Key set to use to compute and construct the optimal binary search tree.
+   * @param p Probabilities of searching for each key in the key set.
+   * @param q Probabilities of searching for keys that don't exist in the key set.
+   * @param n Number of keys.
+   */
+  public OBSTDoubleKnuth(int[] keys, double[] p, double[] q, int n) {
+    super(keys, p, q, n);
+  }
+
+  /**
+   * Unboxes p and q once, for callers that hold them as Double arrays.
+   *
+   * @param keys Key set to use to compute and construct the optimal binary search tree.
+   * @param p Probabilities of searching for each key in the key set.
+   * @param q Probabilities of searching for keys that don't exist in the key set.
+   * @param n Number of keys.
+   */
+  public OBSTDoubleKnuth(int[] keys, Double[] p, Double[] q, int n) {
+    this(keys, unboxDoubleArray(p), unboxDoubleArray(q), n);
+  }
+
+  /**
+   * A range containing a single key can only have that key as its root. Otherwise, the root can
+   * be no lower than the root of the same range without its highest key.
+   */
+  @Override
+  int lowestRoot(int i, int j) {
+    return (i < j) ? root.get(i, j - 1) : i;
+  }
+
+  /**
+   * A range containing a single key can only have that key as its root. Otherwise, the root can
+   * be no higher than the root of the same range without its lowest key.
+   */
+  @Override
+  int highestRoot(int i, int j) {
+    return (i < j) ? root.get(i + 1, j) : j;
+  }
+}
@@ -0,0 +1,180 @@
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Extends OBSTDoubleKnuth to calculate each diagonal of the matrices on several threads. Every
+ * cell is calculated exactly as OBSTDoubleKnuth calculates it, so the e, w and root matrices are
+ * the same as OBSTDoubleKnuth's, whatever the number of threads. Like OBSTDoubleKnuth's, they can
+ * differ from the classic engine's roots where candidates tie; see OBSTDoubleKnuth.
+ *
+ * Every cell on diagonal l (that is, every range of l keys) only reads cells from shorter ranges,
+ * so all the cells of one diagonal can be calculated at the same time. We split each diagonal
+ * into chunks and run them on a ForkJoinPool, then wait for the whole diagonal to finish before
+ * starting the next one. Diagonals with fewer cells than the sequential threshold are calculated
+ * on the calling thread, because forking them would cost more than it saves.
+ */
+public class OBSTDoubleParallel extends OBSTDoubleKnuth {
+
+  /**
+   * Default number of cells below which a diagonal (or a chunk of one) is not split any further.
+   */
+  public static final int DEFAULT_SEQUENTIAL_THRESHOLD = 1024;
+
+  /**
+   * Number of threads used to calculate each diagonal.
+   */
+  private final int parallelism;
+
+  /**
+   * Number of cells below which a diagonal (or a chunk of one) is not split any further.
+   */
+  private final int sequentialThreshold;
+
+  /**
+   * Uses one thread per available processor and the default sequential threshold.
+   *
+   * @param keys Key set to use to compute and construct the optimal binary search tree.
+   * @param p Probabilities of searching for each key in the key set.
+   * @param q Probabilities of searching for keys that don't exist in the key set.
+   * @param n Number of keys.
+   */
+  public OBSTDoubleParallel(int[] keys, double[] p, double[] q, int n) {
+    this(keys, p, q, n, Runtime.getRuntime().availableProcessors(), DEFAULT_SEQUENTIAL_THRESHOLD);
+  }
+
+  /**
+   * Unboxes p and q once, for callers that hold them as Double arrays.
+   *
+   * @param keys Key set to use to compute and construct the optimal binary search tree.
+   * @param p Probabilities of searching for each key in the key set.
+   * @param q Probabilities of searching for keys that don't exist in the key set.
+   * @param n Number of keys.
+   */
+  public OBSTDoubleParallel(int[] keys, Double[] p, Double[] q, int n) {
+    this(keys, unboxDoubleArray(p), unboxDoubleArray(q), n);
+  }
+
+  /**
+   * @param keys Key set to use to compute and construct the optimal binary search tree.
+   * @param p Probabilities of searching for each key in the key set.
+   * @param q Probabilities of searching for keys that don't exist in the key set.
+   * @param n Number of keys.
+   * @param parallelism Number of threads used to calculate each diagonal.
+   * @param sequentialThreshold Number of cells below which a diagonal is not split any further.
+   */
+  public OBSTDoubleParallel(int[] keys, double[] p, double[] q, int n, int parallelism,
+      int sequentialThreshold) {
+    super(keys, p, q, n);
+
+    if (parallelism < 1) {
+      throw new IllegalArgumentException("parallelism must be at least 1.");
+    }
+    if (sequentialThreshold < 1) {
+      throw new IllegalArgumentException("sequentialThreshold must be at least 1.");
+    }
+    this.parallelism = parallelism;
+    this.sequentialThreshold = sequentialThreshold;
+  }
+
+  /**
+   * Unboxes p and q once, for callers that hold them as Double arrays.
+   *
+   * @param keys Key set to use to compute and construct the optimal binary search tree.
+   * @param p Probabilities of searching for each key in the key set.
+   * @param q Probabilities of searching for keys that don't exist in the key set.
+   * @param n Number of keys.
+   * @param parallelism Number of threads used to calculate each diagonal.
+   * @param sequentialThreshold Number of cells below which a diagonal is not split any further.
+   */
+  public OBSTDoubleParallel(int[] keys, Double[] p, Double[] q, int n, int parallelism,
+      int sequentialThreshold) {
+    this(keys, unboxDoubleArray(p), unboxDoubleArray(q), n, parallelism, sequentialThreshold);
+  }
+
+  /**
+   * @return Number of threads used to calculate each diagonal.
+   */
+  public int getParallelism() {return parallelism;}
+
+  /**
+   * @return Number of cells below which a diagonal is not split any further.
+   */
+  public int getSequentialThreshold() {return sequentialThreshold;}
+
+  /**
+   * Calculates the matrices one diagonal at a time, splitting large diagonals across the threads
+   * of a ForkJoinPool. ForkJoinPool.invoke() returns only once every chunk of the diagonal has
+   * finished, which acts as the barrier between diagonals.
+   */
+  @Override
+  void fillMatrices() {
+    ForkJoinPool pool = new ForkJoinPool(parallelism);
+    try {
+      for (int l = firstDiagonal; l <= n; l++) {
+        int cells = n - l + 1;
+
+        // Split the diagonal into roughly four chunks per thread so a slow chunk does not hold up
+        // the barrier, but never into chunks smaller than the threshold.
+        int chunk = Math.max(sequentialThreshold, cells / (parallelism * 4));
+
+        if (parallelism == 1 || cells <= chunk) {
+          computeDiagonal(l, 1, cells);
+        } else {
+          pool.invoke(new DiagonalTask(l, 1, cells, chunk));
+        }
+        diagonalFinished(l);
+      }
+    } finally {
+      pool.shutdown();
+    }
+  }
+
+  /**
+   * Calculates the cells [i][i+l-1] of diagonal l for every i in [low..high].
+   *
+   * @param l The length of the ranges on the diagonal.
+   * @param low The lowest i to calculate.
+   * @param high The highest i to calculate.
+   */
+  private void computeDiagonal(int l, int low, int high) {
+    for (int i = low; i <= high; i++) {
+      computeCell(i, i + l - 1);
+    }
+  }
+
+  /**
+   * Calculates part of a diagonal, splitting itself in half until it is no larger than a chunk.
+   */
+  private class DiagonalTask extends RecursiveAction {
+
+    private static final long serialVersionUID = 1L;
+
+    private final int l;
+    private final int low;
+    private final int high;
+    private final int chunk;
+
+    /**
+     * @param l The length of the ranges on the diagonal.
+     * @param low The lowest i to calculate.
+     * @param high The highest i to calculate.
+     * @param chunk Number of cells below which the task is not split any further.
+     */
+    DiagonalTask(int l, int low, int high, int chunk) {
+      this.l = l;
+      this.low = low;
+      this.high = high;
+      this.chunk = chunk;
+    }
+
+    @Override
+    protected void compute() {
+      if (high - low + 1 <= chunk) {
+        computeDiagonal(l, low, high);
+      } else {
+        int mid = (low + high) >>> 1;
+        invokeAll(new DiagonalTask(l, low, mid, chunk), new DiagonalTask(l, mid + 1, high, chunk));
+      }
+    }
+  }
+}
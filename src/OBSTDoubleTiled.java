@@ -0,0 +1,288 @@
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+
+/**
+ * Extends OBSTDouble to fill the matrices tile by tile instead of diagonal by diagonal, so that
+ * the cells being read stay in the processor's cache. The result (the e, w and root matrices) is
+ * the same as the classic engine.
+ *
+ * Calculating a diagonal reads almost every row and column of e, so at large n each diagonal
+ * pushes the previous one out of cache, and the e[r+1][j] reads walk down a column, touching a
+ * different cache line every time. Here the key range is cut into blocks of tileSize keys, and
+ * the cells [i][j] with i in block I and j in block J form tile (I, J). Cell [i][j] only reads
+ * cells to its left in row i and below it in column j, so the tiles can be calculated one
+ * column of tiles at a time, from left to right, and each column from the bottom up.
+ *
+ * For a tile off the diagonal, most of the candidate roots r lie in the blocks K strictly between
+ * I and J. Their costs, e[i][r-1] + e[r+1][j] + w[i][j], only read tiles (I, K) and (K, J),
+ * which are already finished, so they are added to every cell of the tile one block K at a time
+ * (like a tiled matrix multiplication, with min in place of +), walking rows of e rather than
+ * columns. The roots in blocks I and J read cells of the tile itself, so they are tried last, one
+ * cell at a time in the order the cells depend on each other.
+ *
+ * The roots are therefore not tried in ascending order, so ties are settled by which block a root
+ * is in: of several equally cheap roots, the lowest one always wins, which is the root the classic
+ * engine chooses. Every cost is added in the same order as OBSTDouble.computeCell(), so the
+ * matrices match it to the bit.
+ */
+public class OBSTDoubleTiled extends OBSTDouble {
+
+  /**
+   * The L2 cache size assumed when it cannot be found out.
+   */
+  private static final int DEFAULT_CACHE_BYTES = 256 * 1024;
+
+  /**
+   * Number of keys in each block, i.e. the width and height of a tile.
+   */
+  private final int tileSize;
+
+  /**
+   * The best cost and root found so far for each cell of the tile being calculated, row by row.
+   */
+  private double[] bestCost;
+  private int[] bestRoot;
+
+  /**
+   * Picks the tile size from the size of the processor's L2 cache.
+   *
+   * @param keys Key set to use to compute and construct the optimal binary search tree.
+   * @param p Probabilities of searching for each key in the key set.
+   * @param q Probabilities of searching for keys that don't exist in the key set.
+   * @param n Number of keys.
+   */
+  public OBSTDoubleTiled(int[] keys, double[] p, double[] q, int n) {
+    this(keys, p, q, n, defaultTileSize());
+  }
+
+  /**
+   * Unboxes p and q once, for callers that hold them as Double arrays.
+   *
+   * @param keys Key set to use to compute and construct the optimal binary search tree.
+   * @param p Probabilities of searching for each key in the key set.
+   * @param q Probabilities of searching for keys that don't exist in the key set.
+   * @param n Number of keys.
+   */
+  public OBSTDoubleTiled(int[] keys, Double[] p, Double[] q, int n) {
+    this(keys, unboxDoubleArray(p), unboxDoubleArray(q), n);
+  }
+
+  /**
+   * @param keys Key set to use to compute and construct the optimal binary search tree.
+   * @param p Probabilities of searching for each key in the key set.
+   * @param q Probabilities of searching for keys that don't exist in the key set.
+   * @param n Number of keys.
+   * @param tileSize Number of keys in each block, i.e. the width and height of a tile.
+   */
+  public OBSTDoubleTiled(int[] keys, double[] p, double[] q, int n, int tileSize) {
+    super(keys, p, q, n);
+    if (tileSize < 1) {
+      throw new IllegalArgumentException("tileSize must be at least 1.");
+    }
+    this.tileSize = tileSize;
+  }
+
+  /**
+   * Unboxes p and q once, for callers that hold them as Double arrays.
+   *
+   * @param keys Key set to use to compute and construct the optimal binary search tree.
+   * @param p Probabilities of searching for each key in the key set.
+   * @param q Probabilities of searching for keys that don't exist in the key set.
+   * @param n Number of keys.
+   * @param tileSize Number of keys in each block, i.e. the width and height of a tile.
+   */
+  public OBSTDoubleTiled(int[] keys, Double[] p, Double[] q, int n, int tileSize) {
+    this(keys, unboxDoubleArray(p), unboxDoubleArray(q), n, tileSize);
+  }
+
+  /**
+   * @return Number of keys in each block, i.e. the width and height of a tile.
+   */
+  public int getTileSize() {return tileSize;}
+
+  /**
+   * Returns the tile size that fits the working set of a tile in the L2 cache. Calculating a tile
+   * reads a tile-sized piece of rows from tile (I, K), a piece of columns from tile (K, J), and
+   * updates the tile itself, so three tiles of doubles should fit. The cache size is read from
+   * Linux's sysfs; on other systems, 256 KiB is assumed.
+   *
+   * @return The default number of keys in each block.
+   */
+  public static int defaultTileSize() {
+    int cacheBytes = DEFAULT_CACHE_BYTES;
+    Path size = Paths.get("/sys/devices/system/cpu/cpu0/cache/index2/size");
+    try {
+      List<String> lines = Files.readAllLines(size, StandardCharsets.US_ASCII);
+      if (!lines.isEmpty()) {
+        cacheBytes = parseCacheSize(lines.get(0).trim());
+      }
+    } catch (IOException | NumberFormatException | SecurityException unknown) {
+      cacheBytes = DEFAULT_CACHE_BYTES;
+    }
+
+    // Round down to a multiple of 8 so a row of a tile is a whole number of cache lines.
+    int tile = (int) Math.sqrt(cacheBytes / (3.0 * Double.BYTES));
+    return Math.max(8, tile - tile % 8);
+  }
+
+  /**
+   * @param size A cache size as sysfs writes it, e.g. "1024K" or "2M".
+   * @return The size in bytes.
+   */
+  private static int parseCacheSize(String size) {
+    char unit = size.isEmpty() ? ' ' : Character.toUpperCase(size.charAt(size.length() - 1));
+    if (unit == 'K') {
+      return Integer.parseInt(size.substring(0, size.length() - 1)) * 1024;
+    } else if (unit == 'M') {
+      return Integer.parseInt(size.substring(0, size.length() - 1)) * 1024 * 1024;
+    }
+    return Integer.parseInt(size);
+  }
+
+  /**
+   * Calculates the matrices one tile at a time: the columns of tiles from left to right, and each
+   * column from the tile on the diagonal upwards.
+   */
+  @Override
+  void fillMatrices() {
+    int blocks = (n + tileSize - 1) / tileSize;
+    for (int blockJ = 0; blockJ < blocks; blockJ++) {
+      for (int blockI = blockJ; blockI >= 0; blockI--) {
+        if (blockI == blockJ) {
+          computeDiagonalTile(blockI);
+        } else {
+          computeTile(blockI, blockJ);
+        }
+      }
+    }
+  }
+
+  /**
+   * The tiles do not finish whole diagonals until the last column of tiles, so there is no
+   * progress to checkpoint.
+   */
+  @Override
+  boolean fillsDiagonals() {
+    return false;
+  }
+
+  /**
+   * @return The lowest key index in a block.
+   */
+  private int blockLow(int block) {
+    return block * tileSize + 1;
+  }
+
+  /**
+   * @return The highest key index in a block.
+   */
+  private int blockHigh(int block) {
+    return Math.min(n, (block + 1) * tileSize);
+  }
+
+  /**
+   * Calculates a tile on the diagonal. Every cell's candidate roots lie within the block, so the
+   * cells are calculated as in the classic engine, from the bottom row up and each row from left
+   * to right.
+   *
+   * @param block The block whose ranges the tile holds.
+   */
+  private void computeDiagonalTile(int block) {
+    int low = blockLow(block);
+    int high = blockHigh(block);
+    for (int i = high; i >= low; i--) {
+      for (int j = i; j <= high; j++) {
+        computeCell(i, j);
+      }
+    }
+  }
+
+  /**
+   * Calculates tile (blockI, blockJ), which lies above the diagonal.
+   *
+   * @param blockI The block of the lower bounds of the tile's ranges.
+   * @param blockJ The block of the upper bounds of the tile's ranges.
+   */
+  private void computeTile(int blockI, int blockJ) {
+    int iLow = blockLow(blockI);
+    int iHigh = blockHigh(blockI);
+    int jLow = blockLow(blockJ);
+    int jHigh = blockHigh(blockJ);
+
+    int width = jHigh - jLow + 1;
+    if (bestCost == null || bestCost.length < tileSize * tileSize) {
+      bestCost = new double[tileSize * tileSize];
+      bestRoot = new int[tileSize * tileSize];
+    }
+    double[] bestCost = this.bestCost;
+    int[] bestRoot = this.bestRoot;
+
+    // The weights only depend on the cell to their left, which is either in this tile or in the
+    // tile to its left.
+    for (int i = iLow; i <= iHigh; i++) {
+      int cell = (i - iLow) * width;
+      for (int j = jLow; j <= jHigh; j++) {
+        w.set(i, j, w.get(i, j - 1) + pValues[j - 1] + qValues[j]);
+        bestCost[cell] = Double.MAX_VALUE;
+        bestRoot[cell] = 0;
+        cell++;
+      }
+    }
+
+    // The roots in the blocks in between read only finished tiles. For each root r, the inner
+    // loop walks row i of this tile and row r + 1 of tile (K, J). The roots are tried in ascending
+    // order here, so a strictly lower cost is enough to replace the best so far.
+    for (int blockK = blockI + 1; blockK < blockJ; blockK++) {
+      int rLow = blockLow(blockK);
+      int rHigh = blockHigh(blockK);
+      for (int i = iLow; i <= iHigh; i++) {
+        int rowCell = (i - iLow) * width - jLow;
+        for (int r = rLow; r <= rHigh; r++) {
+          double left = e.get(i, r - 1);
+          for (int j = jLow; j <= jHigh; j++) {
+            double t = left + e.get(r + 1, j) + w.get(i, j);
+            if (t < bestCost[rowCell + j]) {
+              bestCost[rowCell + j] = t;
+              bestRoot[rowCell + j] = r;
+            }
+          }
+        }
+      }
+    }
+
+    // The roots in blocks I and J read this tile: row i to the left of [i][j], and column j below
+    // it. Calculating from the bottom row up, and each row from left to right, finishes both first.
+    // The roots in block I are lower than those of the blocks in between, so they win a tie with
+    // one of those, but not with a lower root of block I. The roots in block J are higher than any
+    // other, so they never win a tie.
+    for (int i = iHigh; i >= iLow; i--) {
+      int cell = (i - iLow) * width;
+      for (int j = jLow; j <= jHigh; j++) {
+        double wij = w.get(i, j);
+        double eij = bestCost[cell];
+        int rootij = bestRoot[cell];
+        for (int r = i; r <= iHigh; r++) {
+          double t = e.get(i, r - 1) + e.get(r + 1, j) + wij;
+          if (t < eij || (t == eij && rootij > iHigh)) {
+            eij = t;
+            rootij = r;
+          }
+        }
+        for (int r = jLow; r <= j; r++) {
+          double t = e.get(i, r - 1) + e.get(r + 1, j) + wij;
+          if (t < eij) {
+            eij = t;
+            rootij = r;
+          }
+        }
+        e.set(i, j, eij);
+        root.set(i, j, rootij);
+        cell++;
+      }
+    }
+  }
+}
@@ -0,0 +1,151 @@
+/**
+ * Extends OBSTDouble to try the candidate roots of each range several at a time with SIMD
+ * instructions. The result (the e, w and root matrices) is the same as the classic engine.
+ *
+ * The cost of candidate r is e[i][r-1] + e[r+1][j] + w[i][j]. As r runs from i to j, e[i][r-1]
+ * walks along row i of the packed e matrix, which is contiguous, but e[r+1][j] walks down column
+ * j, which jumps a whole row at every step. This engine keeps a second copy of e packed column by
+ * column, so both operands are contiguous, and hands them to a RootKernel. The kernel is
+ * VectorRootKernel when the JVM was started with --add-modules jdk.incubator.vector (and the
+ * kernel was compiled from src-vector); otherwise it is the scalar RootKernel, which still
+ * benefits from reading the column contiguously.
+ *
+ * The copy needs the matrices on the heap. With useMappedMatrices(), every cell is calculated as
+ * in the classic engine.
+ */
+public class OBSTDoubleVector extends OBSTDouble {
+
+  private final RootKernel kernel = RootKernel.create();
+
+  /**
+   * The e matrix that eColumns is a copy of, or null if e is not on the heap.
+   */
+  private HeapDoubleMatrix heapE;
+
+  /**
+   * The cells of e packed column by column: column j holds [1][j], [2][j], ..., [j+1][j].
+   */
+  private double[] eColumns;
+
+  /**
+   * The position of the (imaginary) cell [0][j] in eColumns, for each column j.
+   */
+  private int[] columnStart;
+
+  /**
+   * @param keys Key set to use to compute and construct the optimal binary search tree.
+   * @param p Probabilities of searching for each key in the key set.
+   * @param q Probabilities of searching for keys that don't exist in the key set.
+   * @param n Number of keys.
+   */
+  public OBSTDoubleVector(int[] keys, double[] p, double[] q, int n) {
+    super(keys, p, q, n);
+  }
+
+  /**
+   * Unboxes p and q once, for callers that hold them as Double arrays.
+   *
+   * @param keys Key set to use to compute and construct the optimal binary search tree.
+   * @param p Probabilities of searching for each key in the key set.
+   * @param q Probabilities of searching for keys that don't exist in the key set.
+   * @param n Number of keys.
+   */
+  public OBSTDoubleVector(int[] keys, Double[] p, Double[] q, int n) {
+    this(keys, unboxDoubleArray(p), unboxDoubleArray(q), n);
+  }
+
+  /**
+   * @return "vector" and the number of lanes if the Vector API is in use, otherwise "scalar".
+   */
+  public String getKernel() {return kernel.describe();}
+
+  /**
+   * Allocates the column copy of e along with the matrices, if they are on the heap.
+   */
+  @Override
+  void initialize() {
+    super.initialize();
+
+    if (!(e instanceof HeapDoubleMatrix)) {
+      heapE = null;
+      eColumns = null;
+      return;
+    }
+    if (heapE != e) {
+      heapE = (HeapDoubleMatrix) e;
+      eColumns = new double[(int) TriangularMatrix.size(n)];
+      columnStart = new int[n + 1];
+      columnStart[0] = -1;
+      for (int j = 1; j <= n; j++) {
+        columnStart[j] = columnStart[j - 1] + j;
+      }
+    }
+    copyDummyKeys();
+  }
+
+  /**
+   * updateProbabilities() writes the new dummy keys straight into e, so the copy takes them too.
+   */
+  @Override
+  void probabilitiesUpdated() {
+    if (eColumns != null && heapE == e) {
+      copyDummyKeys();
+    }
+  }
+
+  /**
+   * A checkpoint writes the restored cells straight into e, so the copy takes them too.
+   */
+  @Override
+  void cellsRestored(int lastDiagonal) {
+    if (eColumns != null && heapE == e) {
+      for (int j = 1; j <= n; j++) {
+        for (int i = Math.max(1, j - lastDiagonal + 1); i <= j; i++) {
+          eColumns[columnStart[j] + i] = heapE.get(i, j);
+        }
+      }
+    }
+  }
+
+  /**
+   * Calculates e[i][j], w[i][j] and root[i][j] like OBSTDouble.computeCell(), with the kernel
+   * trying the candidate roots.
+   *
+   * @param i The lower bound of the range.
+   * @param j The upper bound of the range.
+   */
+  @Override
+  void computeCell(int i, int j) {
+    if (eColumns == null || heapE != e) {
+      super.computeCell(i, j);
+      return;
+    }
+
+    double wij = w.get(i, j - 1) + pValues[j - 1] + qValues[j];
+    w.set(i, j, wij);
+
+    // Candidate r reads e[i][r-1] from row i and e[r+1][j] from column j.
+    int best = kernel.argmin(heapE.data, (int) heapE.index(i, i - 1), eColumns,
+        columnStart[j] + i + 1, j - i + 1, wij);
+
+    double eij = Double.MAX_VALUE;
+    int rootij = 0;
+    if (best >= 0) {
+      rootij = i + best;
+      eij = heapE.get(i, rootij - 1) + heapE.get(rootij + 1, j) + wij;
+    }
+
+    heapE.set(i, j, eij);
+    eColumns[columnStart[j] + i] = eij;
+    root.set(i, j, rootij);
+  }
+
+  /**
+   * Copies the dummy keys, e[i][i-1], into the column copy of e.
+   */
+  private void copyDummyKeys() {
+    for (int i = 1; i <= n + 1; i++) {
+      eColumns[columnStart[i - 1] + i] = qValues[i - 1];
+    }
+  }
+}
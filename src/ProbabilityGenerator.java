@@ -23,6 +23,16 @@ public class ProbabilityGenerator<T> {
    */
   T[] pq;
 
+  /**
+   * @return Probabilities for all real keys.
+   */
+  public T[] getP() {return p;}
+
+  /**
+   * @return Probabilities for all dummy keys.
+   */
+  public T[] getQ() {return q;}
+
   /**
    * Splits the pq array into the p array and the q array. That is, it splits the array containing
    * all probabilities into two separate arrays: one for real keys, one for dummy keys.
@@ -23,6 +23,35 @@ public class ProbabilityGeneratorBigDecimal extends ProbabilityGenerator<BigDeci
     generateProbabilities();
   }
 
+  /**
+   * Initializes the probabilities from the number of times each key and dummy key was searched
+   * for, e.g. as counted by AccessCounter.
+   *
+   * @param counts The number of searches for each of the n keys, followed by the number of
+   *     searches for each of the n + 1 dummy keys.
+   */
+  public ProbabilityGeneratorBigDecimal(long[] counts) {
+    int n = (counts.length - 1) / 2;
+    if (counts.length != (n * 2) + 1) {
+      throw new IllegalArgumentException("There must be one count for each of the n keys and "
+          + "n + 1 dummy keys.");
+    }
+
+    p = new BigDecimal[n];
+    q = new BigDecimal[n + 1];
+    pq = new BigDecimal[counts.length];
+    long total = 0;
+    for (int i = 0; i < counts.length; i++) {
+      pq[i] = BigDecimal.valueOf(counts[i]);
+      total += counts[i];
+    }
+    if (total <= 0) {
+      throw new IllegalArgumentException("No searches have been counted.");
+    }
+
+    generateProbabilities();
+  }
+
   /**
    * Generates n random values.
    *
@@ -12,12 +12,56 @@ public class ProbabilityGeneratorDouble extends ProbabilityGenerator<Double> {
    * @param n Number of keys in the key set.
    */
   public ProbabilityGeneratorDouble(int n) {
+    this(n, new Random());
+  }
+
+  /**
+   * Initializes the probability generator from a seed. The same seed always gives the same
+   * probabilities, e.g. so that OBSTDouble can resume a checkpoint of an earlier run.
+   *
+   * @param n Number of keys in the key set.
+   * @param seed The seed the probabilities are generated from.
+   */
+  public ProbabilityGeneratorDouble(int n, long seed) {
+    this(n, new Random(seed));
+  }
+
+  private ProbabilityGeneratorDouble(int n, Random rand) {
     p = new Double[n];
     q = new Double[n + 1];
 
     // We need to generate probabilities for all keys AND dummy keys, and there are n+1 dummy keys.
     // real keys + dummy keys = n + n + 1 = 2n + 1.
-    pq = generateRandom((n * 2) + 1);
+    pq = generateRandom((n * 2) + 1, rand);
+
+    generateProbabilities();
+  }
+
+  /**
+   * Initializes the probabilities from the number of times each key and dummy key was searched
+   * for, e.g. as counted by AccessCounter.
+   *
+   * @param counts The number of searches for each of the n keys, followed by the number of
+   *     searches for each of the n + 1 dummy keys.
+   */
+  public ProbabilityGeneratorDouble(long[] counts) {
+    int n = (counts.length - 1) / 2;
+    if (counts.length != (n * 2) + 1) {
+      throw new IllegalArgumentException("There must be one count for each of the n keys and "
+          + "n + 1 dummy keys.");
+    }
+
+    p = new Double[n];
+    q = new Double[n + 1];
+    pq = new Double[counts.length];
+    long total = 0;
+    for (int i = 0; i < counts.length; i++) {
+      pq[i] = (double) counts[i];
+      total += counts[i];
+    }
+    if (total <= 0) {
+      throw new IllegalArgumentException("No searches have been counted.");
+    }
 
     generateProbabilities();
   }
@@ -29,7 +73,10 @@ public class ProbabilityGeneratorDouble extends ProbabilityGenerator<Double> {
    * @return Array of probabilities.
    */
   public Double[] generateRandom(int n) {
-    Random rand = new Random();
+    return generateRandom(n, new Random());
+  }
+
+  private Double[] generateRandom(int n, Random rand) {
     Double[] arr = new Double[n];
 
     // For each element, generate a random integer. Use Integer.MAX_VALUE for maximum variability.
@@ -0,0 +1,368 @@
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Generates the same kind of random search probabilities as ProbabilityGeneratorDouble, but as
+ * primitive arrays, reproducibly from a seed, and on several threads, so that key sets of many
+ * millions of keys get their probabilities in milliseconds.
+ *
+ * The 2n + 1 values (n keys followed by n + 1 dummy keys) are cut into blocks of BLOCK_SIZE. Each
+ * block draws from its own SplittableRandom, split off the seed's generator in block order before
+ * any thread starts, so every value depends only on the seed and its position, never on the
+ * number of threads or the order the blocks run in. Each block then runs on a ForkJoinPool:
+ *
+ * - The first pass draws the random values straight into p and q (there is no pq array to split)
+ *   and adds them up as longs, which is exact.
+ * - The second pass divides every value by the total, and adds up and finds the largest of the
+ *   results. The block totals are combined in block order, so the sum is reproducible too.
+ *
+ * As in ProbabilityGeneratorDouble, whatever the sum misses 1 by is then added to the largest
+ * probability. getScaledP() and getScaledQ() give the probabilities as whole numbers of units of
+ * 10^-SCALE, like the BigDecimals of ProbabilityGeneratorBigDecimal; in units the offset always
+ * makes them add up to exactly 10^SCALE.
+ */
+public class ProbabilityGeneratorParallel {
+
+  /**
+   * Number of values drawn from each random generator, and the smallest piece of work a thread is
+   * given.
+   */
+  public static final int BLOCK_SIZE = 1 << 16;
+
+  /**
+   * Number of decimal places of the scaled probabilities, the same as ProbabilityGeneratorBigDecimal.
+   */
+  public static final int SCALE = 10;
+
+  private static final long UNITS_PER_ONE = 10_000_000_000L;
+
+  /**
+   * The passes made over the blocks.
+   */
+  private enum Pass { DRAW, NORMALIZE, SCALE }
+
+  private final int n;
+  private final long seed;
+  private final int parallelism;
+
+  /**
+   * Probabilities for all real keys.
+   */
+  private final double[] p;
+
+  /**
+   * Probabilities for all dummy keys.
+   */
+  private final double[] q;
+
+  /**
+   * Probabilities for all real keys and dummy keys in units of 10^-SCALE. Only calculated once
+   * asked for.
+   */
+  private long[] scaledP;
+  private long[] scaledQ;
+
+  /**
+   * The random generator of each block.
+   */
+  private SplittableRandom[] randoms;
+
+  /**
+   * The total of each block in the pass that is running, and the position of its largest value.
+   */
+  private long[] blockTotal;
+  private double[] blockSum;
+  private int[] blockLargest;
+
+  /**
+   * The total of the values drawn in the first pass.
+   */
+  private long totalDrawn;
+
+  /**
+   * Uses one thread per available processor.
+   *
+   * @param n Number of keys in the key set.
+   * @param seed The seed the probabilities are generated from. The same seed always gives the same
+   *     probabilities.
+   */
+  public ProbabilityGeneratorParallel(int n, long seed) {
+    this(n, seed, Runtime.getRuntime().availableProcessors());
+  }
+
+  /**
+   * @param n Number of keys in the key set.
+   * @param seed The seed the probabilities are generated from. The same seed always gives the same
+   *     probabilities, whatever the parallelism.
+   * @param parallelism Number of threads to generate the probabilities on.
+   */
+  public ProbabilityGeneratorParallel(int n, long seed, int parallelism) {
+    if (n < 0) {
+      throw new IllegalArgumentException("n must not be negative.");
+    }
+    if (parallelism < 1) {
+      throw new IllegalArgumentException("parallelism must be at least 1.");
+    }
+    this.n = n;
+    this.seed = seed;
+    this.parallelism = parallelism;
+
+    p = new double[n];
+    q = new double[n + 1];
+    generateProbabilities();
+  }
+
+  /**
+   * @return Probabilities for all real keys.
+   */
+  public double[] getP() {return p;}
+
+  /**
+   * @return Probabilities for all dummy keys.
+   */
+  public double[] getQ() {return q;}
+
+  /**
+   * @return The seed the probabilities were generated from.
+   */
+  public long getSeed() {return seed;}
+
+  /**
+   * @return Probabilities for all real keys in units of 10^-SCALE.
+   */
+  public long[] getScaledP() {
+    scaleProbabilities();
+    return scaledP;
+  }
+
+  /**
+   * @return Probabilities for all dummy keys in units of 10^-SCALE.
+   */
+  public long[] getScaledQ() {
+    scaleProbabilities();
+    return scaledQ;
+  }
+
+  /**
+   * Draws the random values and normalizes them into p and q.
+   */
+  private void generateProbabilities() {
+    int blocks = blockCount();
+    randoms = new SplittableRandom[blocks];
+    SplittableRandom random = new SplittableRandom(seed);
+    for (int b = 0; b < blocks; b++) {
+      randoms[b] = random.split();
+    }
+    blockTotal = new long[blocks];
+    blockSum = new double[blocks];
+    blockLargest = new int[blocks];
+
+    runBlocks(Pass.DRAW);
+    long total = 0;
+    for (long t : blockTotal) {
+      total += t;
+    }
+
+    // With every value 0 there is nothing to normalize; leave every probability at 0.
+    if (total > 0) {
+      totalDrawn = total;
+      runBlocks(Pass.NORMALIZE);
+
+      double sum = 0;
+      int largest = blockLargest[0];
+      for (int b = 0; b < blocks; b++) {
+        sum += blockSum[b];
+        if (get(blockLargest[b]) > get(largest)) {
+          largest = blockLargest[b];
+        }
+      }
+      set(largest, get(largest) + (1 - sum));
+    }
+
+    randoms = null;
+  }
+
+  /**
+   * Rounds every probability to SCALE decimal places, then adds whatever the units miss
+   * 10^SCALE by to the largest one.
+   */
+  private void scaleProbabilities() {
+    if (scaledP != null) {
+      return;
+    }
+    scaledP = new long[n];
+    scaledQ = new long[n + 1];
+    blockTotal = new long[blockCount()];
+    blockLargest = new int[blockCount()];
+
+    runBlocks(Pass.SCALE);
+    long total = 0;
+    int largest = blockLargest[0];
+    for (int b = 0; b < blockTotal.length; b++) {
+      total += blockTotal[b];
+      if (getScaled(blockLargest[b]) > getScaled(largest)) {
+        largest = blockLargest[b];
+      }
+    }
+    setScaled(largest, getScaled(largest) + (UNITS_PER_ONE - total));
+  }
+
+  /**
+   * Runs a pass over every block, on the calling thread if there is only one block or one thread.
+   */
+  private void runBlocks(Pass pass) {
+    int blocks = blockCount();
+    if (parallelism == 1 || blocks == 1) {
+      runBlocks(pass, 0, blocks - 1);
+      return;
+    }
+
+    ForkJoinPool pool = new ForkJoinPool(parallelism);
+    try {
+      pool.invoke(new BlockTask(pass, 0, blocks - 1));
+    } finally {
+      pool.shutdown();
+    }
+  }
+
+  /**
+   * Runs a pass over the blocks [low..high].
+   */
+  private void runBlocks(Pass pass, int low, int high) {
+    for (int b = low; b <= high; b++) {
+      int start = b * BLOCK_SIZE;
+      int end = (int) Math.min((long) start + BLOCK_SIZE, 2L * n + 1);
+      switch (pass) {
+        case DRAW:
+          draw(b, start, end);
+          break;
+        case NORMALIZE:
+          normalize(b, start, end);
+          break;
+        default:
+          scale(b, start, end);
+          break;
+      }
+    }
+  }
+
+  /**
+   * Draws the values of a block and adds them up.
+   */
+  private void draw(int block, int start, int end) {
+    SplittableRandom random = randoms[block];
+    long total = 0;
+
+    // For each element, generate a random integer. Use Integer.MAX_VALUE for maximum variability.
+    for (int k = start; k < end; k++) {
+      int v = random.nextInt(Integer.MAX_VALUE);
+      set(k, v);
+      total += v;
+    }
+    blockTotal[block] = total;
+  }
+
+  /**
+   * Divides the values of a block by the total, and adds up and finds the largest of the results.
+   */
+  private void normalize(int block, int start, int end) {
+    double total = totalDrawn;
+    double sum = 0;
+    double largestValue = -1;
+    int largest = start;
+    for (int k = start; k < end; k++) {
+      double v = get(k) / total;
+      set(k, v);
+      sum += v;
+      if (v > largestValue) {
+        largestValue = v;
+        largest = k;
+      }
+    }
+    blockSum[block] = sum;
+    blockLargest[block] = largest;
+  }
+
+  /**
+   * Rounds the probabilities of a block to units, and adds up and finds the largest of the units.
+   */
+  private void scale(int block, int start, int end) {
+    long total = 0;
+    long largestUnits = -1;
+    int largest = start;
+    for (int k = start; k < end; k++) {
+      long units = Math.round(get(k) * UNITS_PER_ONE);
+      setScaled(k, units);
+      total += units;
+      if (units > largestUnits) {
+        largestUnits = units;
+        largest = k;
+      }
+    }
+    blockTotal[block] = total;
+    blockLargest[block] = largest;
+  }
+
+  /**
+   * @return Number of blocks the 2n + 1 values are cut into.
+   */
+  private int blockCount() {
+    return (int) ((2L * n + 1 + BLOCK_SIZE - 1) / BLOCK_SIZE);
+  }
+
+  /**
+   * @return Value k of the n key probabilities followed by the n + 1 dummy key probabilities.
+   */
+  private double get(int k) {
+    return (k < n) ? p[k] : q[k - n];
+  }
+
+  private void set(int k, double value) {
+    if (k < n) {
+      p[k] = value;
+    } else {
+      q[k - n] = value;
+    }
+  }
+
+  private long getScaled(int k) {
+    return (k < n) ? scaledP[k] : scaledQ[k - n];
+  }
+
+  private void setScaled(int k, long value) {
+    if (k < n) {
+      scaledP[k] = value;
+    } else {
+      scaledQ[k - n] = value;
+    }
+  }
+
+  /**
+   * Runs a pass over a range of blocks, splitting itself in half until it is a single block.
+   */
+  private class BlockTask extends RecursiveAction {
+
+    private static final long serialVersionUID = 1L;
+
+    private final Pass pass;
+    private final int low;
+    private final int high;
+
+    BlockTask(Pass pass, int low, int high) {
+      this.pass = pass;
+      this.low = low;
+      this.high = high;
+    }
+
+    @Override
+    protected void compute() {
+      if (low == high) {
+        runBlocks(pass, low, high);
+      } else {
+        int mid = (low + high) >>> 1;
+        invokeAll(new BlockTask(pass, low, mid), new BlockTask(pass, mid + 1, high));
+      }
+    }
+  }
+}
@@ -0,0 +1,64 @@
+/**
+ * Finds the best candidate root of a key range for OBSTDoubleVector. The candidate costs are
+ * left[k] + right[k] + w for k = 0..count-1, where left holds e[i][r-1] and right holds
+ * e[r+1][j], both laid out contiguously. This class works through them one at a time, which is
+ * what the classic engine does. VectorRootKernel (in src-vector, since it needs JDK 16 or later)
+ * works through several at once with the incubating Vector API, and create() uses it whenever it
+ * can be loaded.
+ */
+class RootKernel {
+
+  /**
+   * The name of the class that calculates with the Vector API.
+   */
+  private static final String VECTOR_KERNEL = "VectorRootKernel";
+
+  /**
+   * Loads VectorRootKernel if it was compiled and the jdk.incubator.vector module is present
+   * (i.e. the JVM was started with --add-modules jdk.incubator.vector). Otherwise, returns the
+   * scalar kernel.
+   *
+   * @return The fastest kernel available.
+   */
+  static RootKernel create() {
+    try {
+      return (RootKernel) Class.forName(VECTOR_KERNEL).getDeclaredConstructor().newInstance();
+    } catch (ReflectiveOperationException | LinkageError missing) {
+      return new RootKernel();
+    }
+  }
+
+  /**
+   * @return A short description of how this kernel calculates, e.g. for benchmark results.
+   */
+  String describe() {
+    return "scalar";
+  }
+
+  /**
+   * Finds the candidate with the lowest cost. Costs are added in the same order as
+   * OBSTDouble.computeCell(), (left + right) + w, and of several equal costs the first one wins,
+   * so the result is exactly the root the classic engine would choose.
+   *
+   * @param left The array holding e[i][r-1] for each candidate.
+   * @param leftStart The position of the first candidate's e[i][r-1] in left.
+   * @param right The array holding e[r+1][j] for each candidate.
+   * @param rightStart The position of the first candidate's e[r+1][j] in right.
+   * @param count The number of candidates.
+   * @param w The weight of the range, w[i][j].
+   * @return The position of the best candidate, from 0 to count - 1, or -1 if no cost is below
+   *     Double.MAX_VALUE.
+   */
+  int argmin(double[] left, int leftStart, double[] right, int rightStart, int count, double w) {
+    double min = Double.MAX_VALUE;
+    int best = -1;
+    for (int k = 0; k < count; k++) {
+      double t = left[leftStart + k] + right[rightStart + k] + w;
+      if (t < min) {
+        min = t;
+        best = k;
+      }
+    }
+    return best;
+  }
+}
@@ -0,0 +1,601 @@
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.CharBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Writes a binary search tree to any Appendable (a Writer, a StringBuilder, System.out, ...) in one
+ * of the formats of OBST.PrintFormat:
+ *
+ * - HORIZONTAL draws the tree the traditional way, root at the top, one line per level. Every
+ *   level is as wide as the last one, so the output doubles in size with every level. At most
+ *   MAX_HORIZONTAL_LEVELS levels are drawn, however deep the depth limit allows; a deeper tree is
+ *   cut off at the last of them.
+ * - VERTICAL draws one line per node in pre-order, indented by its depth.
+ * - JSON writes nested objects of the form {"value":5,"left":...,"right":...}, with null for a
+ *   missing child.
+ * - DOT writes a Graphviz digraph. Edges leave a node through its sw or se port, so a lone child
+ *   is still drawn on the correct side.
+ *
+ * VERTICAL, JSON and DOT visit each node once, so they run in time and memory proportional to the
+ * size of the tree. They keep the nodes still to be drawn on an explicit stack rather than the call
+ * stack, so a tree as deep as a linked list is drawn as well as a balanced one. The output is
+ * gathered in a buffer of BUFFER_SIZE characters, which is handed to the Appendable whenever it
+ * fills up, so the Appendable is called a few times per tree rather than once per character, and
+ * nothing is written anywhere else.
+ *
+ * Large trees can be cut down with a depth limit and a node limit. Once either is reached, each
+ * subtree that is left out is drawn as a single CUT node in its place ({"truncated":true} in
+ * JSON), so the output shows where the tree goes on. Nodes are counted towards the limit in the
+ * order they are drawn: level by level for HORIZONTAL, in pre-order for the rest.
+ *
+ * A TreeRenderer can be reused, but renders one tree at a time.
+ */
+public class TreeRenderer {
+
+  /**
+   * A depth or node limit that never cuts anything off.
+   */
+  public static final int UNLIMITED = Integer.MAX_VALUE;
+
+  /**
+   * What a subtree that was cut off is drawn as.
+   */
+  public static final String CUT = "...";
+
+  /**
+   * Number of characters gathered before they are handed to the Appendable.
+   */
+  public static final int BUFFER_SIZE = 8192;
+
+  /**
+   * The most levels HORIZONTAL draws, counting the level of CUT nodes that shows where the tree
+   * was cut off. Each line is then at most 2^11 * 16 characters wide, so the whole drawing stays
+   * under a million characters.
+   */
+  public static final int MAX_HORIZONTAL_LEVELS = 12;
+
+  /**
+   * What VERTICAL indents a line by for each level above it.
+   */
+  private static final String PADDING = "│  ";
+
+  /**
+   * Number of entries the stacks of VERTICAL, JSON and DOT start with. They grow if the tree is
+   * deeper.
+   */
+  private static final int STACK_SIZE = 64;
+
+  private final OBST.PrintFormat format;
+  private final int maxDepth;
+  private final int maxNodes;
+
+  /**
+   * The deepest level drawn in the current format: maxDepth, lowered for HORIZONTAL so that no more
+   * than MAX_HORIZONTAL_LEVELS levels are drawn.
+   */
+  private int depthLimit;
+
+  /**
+   * The Appendable being written to, and the characters not handed to it yet.
+   */
+  private Appendable out;
+  private final char[] buffer = new char[BUFFER_SIZE];
+  private int buffered;
+
+  /**
+   * The padding VERTICAL copies onto each line, and how much of prefix has been filled in.
+   */
+  private char[] prefix = new char[STACK_SIZE * PADDING.length()];
+  private int prefixLength;
+
+  /**
+   * Number of nodes drawn so far, and the next free node id in DOT.
+   */
+  private int rendered;
+  private int nextId;
+
+  /**
+   * Renders the whole tree.
+   *
+   * @param format The format to render the tree in.
+   */
+  public TreeRenderer(OBST.PrintFormat format) {
+    this(format, UNLIMITED, UNLIMITED);
+  }
+
+  /**
+   * @param format The format to render the tree in.
+   * @param maxDepth The deepest level to draw. The root is at depth 0.
+   * @param maxNodes The most nodes to draw.
+   */
+  public TreeRenderer(OBST.PrintFormat format, int maxDepth, int maxNodes) {
+    if (format == null) {
+      throw new IllegalArgumentException("PrintFormat must be HORIZONTAL, VERTICAL, JSON or DOT.");
+    }
+    if (maxDepth < 0) {
+      throw new IllegalArgumentException("maxDepth must not be negative.");
+    }
+    if (maxNodes < 0) {
+      throw new IllegalArgumentException("maxNodes must not be negative.");
+    }
+    this.format = format;
+    this.maxDepth = maxDepth;
+    this.maxNodes = maxNodes;
+  }
+
+  /**
+   * @return The format the tree is rendered in.
+   */
+  public OBST.PrintFormat getFormat() {return format;}
+
+  /**
+   * @return The deepest level drawn.
+   */
+  public int getMaxDepth() {return maxDepth;}
+
+  /**
+   * @return The most nodes drawn.
+   */
+  public int getMaxNodes() {return maxNodes;}
+
+  /**
+   * Renders a tree. The Appendable is not flushed or closed.
+   *
+   * @param tree The tree to render.
+   * @param out Where to write the tree to.
+   * @throws IOException if out cannot be written to.
+   */
+  public void render(BST tree, Appendable out) throws IOException {
+    this.out = out;
+    buffered = 0;
+    rendered = 0;
+    nextId = 0;
+    depthLimit = (format == OBST.PrintFormat.HORIZONTAL)
+        ? Math.min(maxDepth, MAX_HORIZONTAL_LEVELS - 2) : maxDepth;
+    try {
+      BST.Node root = tree.getRoot();
+      switch (format) {
+        case HORIZONTAL:
+          renderHorizontal(root);
+          break;
+        case VERTICAL:
+          renderVertical(root);
+          break;
+        case JSON:
+          renderJson(root);
+          append('\n');
+          break;
+        case DOT:
+          append("digraph BST {\n  node [shape=circle];\n");
+          renderDot(root);
+          append("}\n");
+          break;
+      }
+      flush();
+    } finally {
+      this.out = null;
+    }
+  }
+
+  /**
+   * @return Whether a node at the given depth is cut off, rather than drawn.
+   */
+  private boolean cut(int depth) {
+    return depth > depthLimit || rendered >= maxNodes;
+  }
+
+  /**
+   * Draws the tree as one line per node, in pre-order, of the form padding + pointer + value. The
+   * padding is "│  " once for each level above the node, and the pointer is "├──" for a left child
+   * with a right sibling and "└──" for any other child.
+   *
+   * The nodes still to be drawn are kept on an explicit stack rather than the call stack, so a
+   * tree as deep as a linked list is drawn as well as a balanced one. Each node is pushed with its
+   * depth and pointer; its right child is pushed before its left, so the left subtree is drawn
+   * first. The stack never holds more than two nodes per level.
+   *
+   * The padding of every line is copied from one prefix buffer, which is only ever extended when
+   * a line is deeper than any before it, and is cut back to the depth of each line by using fewer
+   * of its characters. No String is built for any line.
+   */
+  private void renderVertical(BST.Node root) throws IOException {
+    if (root == null) {
+      return;
+    }
+    BST.Node[] nodes = new BST.Node[STACK_SIZE];
+    int[] depths = new int[STACK_SIZE];
+    boolean[] hasSibling = new boolean[STACK_SIZE];
+    int top = 0;
+    nodes[0] = root;
+    prefixLength = 0;
+
+    while (top >= 0) {
+      BST.Node node = nodes[top];
+      int depth = depths[top];
+      boolean sibling = hasSibling[top];
+      nodes[top--] = null;
+
+      appendPrefix(depth);
+      if (depth > 0) {
+        append(sibling ? "├──" : "└──");
+      }
+      if (cut(depth)) {
+        append(CUT);
+        append('\n');
+        continue;
+      }
+      rendered++;
+      append(node.getData());
+      append('\n');
+
+      BST.Node left = node.getLeft();
+      BST.Node right = node.getRight();
+      if (top + 2 >= nodes.length) {
+        nodes = Arrays.copyOf(nodes, 2 * nodes.length);
+        depths = Arrays.copyOf(depths, 2 * depths.length);
+        hasSibling = Arrays.copyOf(hasSibling, 2 * hasSibling.length);
+      }
+      if (right != null) {
+        top++;
+        nodes[top] = right;
+        depths[top] = depth + 1;
+        hasSibling[top] = false;
+      }
+      if (left != null) {
+        top++;
+        nodes[top] = left;
+        depths[top] = depth + 1;
+        hasSibling[top] = (right != null);
+      }
+    }
+  }
+
+  /**
+   * Appends the padding of a line at the given depth, extending the prefix buffer first if no
+   * line has been that deep yet.
+   */
+  private void appendPrefix(int depth) throws IOException {
+    int length = depth * PADDING.length();
+    if (length > prefixLength) {
+      if (length > prefix.length) {
+        prefix = Arrays.copyOf(prefix, Math.max(length, 2 * prefix.length));
+      }
+      for (int k = prefixLength; k < length; k += PADDING.length()) {
+        PADDING.getChars(0, PADDING.length(), prefix, k);
+      }
+      prefixLength = length;
+    }
+    append(prefix, length);
+  }
+
+  /**
+   * Writes the tree as nested objects. Each node on the stack is at one of three stages: not
+   * opened yet, left child written, or right child written; it moves to the next stage each time
+   * it comes back to the top of the stack, and is popped once it is closed. The stack holds one
+   * node per level, or a null child below the deepest of them.
+   */
+  private void renderJson(BST.Node root) throws IOException {
+    BST.Node[] nodes = new BST.Node[STACK_SIZE];
+    int[] depths = new int[STACK_SIZE];
+    int[] stages = new int[STACK_SIZE];
+    int top = 0;
+    nodes[0] = root;
+
+    while (top >= 0) {
+      BST.Node node = nodes[top];
+      int depth = depths[top];
+
+      if (stages[top] == 0) {
+        if (node == null) {
+          append("null");
+          top--;
+          continue;
+        }
+        if (cut(depth)) {
+          append("{\"truncated\":true}");
+          nodes[top--] = null;
+          continue;
+        }
+        rendered++;
+        append("{\"value\":");
+        append(node.getData());
+        append(",\"left\":");
+      } else if (stages[top] == 1) {
+        append(",\"right\":");
+      } else {
+        append('}');
+        nodes[top--] = null;
+        continue;
+      }
+
+      stages[top]++;
+      if (top + 1 == nodes.length) {
+        nodes = Arrays.copyOf(nodes, 2 * nodes.length);
+        depths = Arrays.copyOf(depths, 2 * depths.length);
+        stages = Arrays.copyOf(stages, 2 * stages.length);
+      }
+      top++;
+      nodes[top] = (stages[top - 1] == 1) ? node.getLeft() : node.getRight();
+      depths[top] = depth + 1;
+      stages[top] = 0;
+    }
+  }
+
+  /**
+   * Declares each node, draws the edge to it from its parent, and then does the same for its
+   * subtree. Nodes are numbered in the order they are declared, which is pre-order. As in
+   * renderVertical(), each node is pushed with its depth, its parent's id and the port the edge
+   * leaves from, right child before left.
+   */
+  private void renderDot(BST.Node root) throws IOException {
+    if (root == null) {
+      return;
+    }
+    BST.Node[] nodes = new BST.Node[STACK_SIZE];
+    int[] depths = new int[STACK_SIZE];
+    int[] parentIds = new int[STACK_SIZE];
+    String[] ports = new String[STACK_SIZE];
+    int top = 0;
+    nodes[0] = root;
+    parentIds[0] = -1;
+
+    while (top >= 0) {
+      BST.Node node = nodes[top];
+      int depth = depths[top];
+      int parentId = parentIds[top];
+      String port = ports[top];
+      nodes[top--] = null;
+
+      int id = nextId++;
+      if (parentId >= 0) {
+        append("  n");
+        append(parentId);
+        append(':');
+        append(port);
+        append(" -> n");
+        append(id);
+        append(";\n");
+      }
+      append("  n");
+      append(id);
+      if (cut(depth)) {
+        append(" [label=\"" + CUT + "\", shape=none];\n");
+        continue;
+      }
+      rendered++;
+      append(" [label=\"");
+      append(node.getData());
+      append("\"];\n");
+
+      BST.Node left = node.getLeft();
+      BST.Node right = node.getRight();
+      if (top + 2 >= nodes.length) {
+        nodes = Arrays.copyOf(nodes, 2 * nodes.length);
+        depths = Arrays.copyOf(depths, 2 * depths.length);
+        parentIds = Arrays.copyOf(parentIds, 2 * parentIds.length);
+        ports = Arrays.copyOf(ports, 2 * ports.length);
+      }
+      if (right != null) {
+        top++;
+        nodes[top] = right;
+        depths[top] = depth + 1;
+        parentIds[top] = id;
+        ports[top] = "se";
+      }
+      if (left != null) {
+        top++;
+        nodes[top] = left;
+        depths[top] = depth + 1;
+        parentIds[top] = id;
+        ports[top] = "sw";
+      }
+    }
+  }
+
+  /**
+   * Draws the tree level by level. Each level is a list with a place for every node a complete
+   * tree would have there, which is empty if there is no node. The last level decides how wide
+   * every level is, so the levels are first walked once without drawing anything, to find how
+   * many there are and the widest value; only the level being drawn is ever held in memory.
+   *
+   * NOTE: The layout was taken from:
+   * https://stackoverflow.com/questions/4965335/how-to-print-binary-tree-diagram
+   */
+  private void renderHorizontal(BST.Node root) throws IOException {
+    if (root == null) {
+      return;
+    }
+
+    // Walk the nodes that will be drawn, without their empty places, to size the drawing.
+    int levels = 0;
+    int widest = 0;
+    List<BST.Node> level = new ArrayList<>();
+    List<BST.Node> next = new ArrayList<>();
+    level.add(root);
+    while (!level.isEmpty()) {
+      for (BST.Node node : level) {
+        String label = label(node, levels);
+        widest = Math.max(widest, label.length());
+        if (label != CUT) {
+          addChild(next, node.getLeft());
+          addChild(next, node.getRight());
+        }
+      }
+      levels++;
+      List<BST.Node> swap = level;
+      level = next;
+      next = swap;
+      next.clear();
+    }
+    if (widest % 2 == 1) {
+      widest++;
+    }
+
+    // Now draw them, with their empty places. A null node is an empty place.
+    rendered = 0;
+    String[] line = new String[1];
+    BST.Node[] nodes = {root};
+    int perpiece = (1 << (levels - 1)) * (widest + 4);
+    for (int depth = 0; depth < levels; depth++) {
+      for (int j = 0; j < nodes.length; j++) {
+        line[j] = (nodes[j] == null) ? null : label(nodes[j], depth);
+      }
+      int hpw = perpiece / 2 - 1;
+
+      if (depth > 0) {
+        for (int j = 0; j < line.length; j++) {
+
+          // split node
+          char c = ' ';
+          if (j % 2 == 1) {
+            if (line[j - 1] != null) {
+              c = (line[j] != null) ? '┴' : '┘';
+            } else if (line[j] != null) {
+              c = '└';
+            }
+          }
+          append(c);
+
+          // lines and spaces
+          if (line[j] == null) {
+            repeat(' ', perpiece - 1);
+          } else {
+            repeat(j % 2 == 0 ? ' ' : '─', hpw);
+            append(j % 2 == 0 ? '┌' : '┐');
+            repeat(j % 2 == 0 ? '─' : ' ', hpw);
+          }
+        }
+        append('\n');
+      }
+
+      // line of values
+      for (String value : line) {
+        String f = (value == null) ? "" : value;
+        repeat(' ', (perpiece - f.length() + 1) / 2);
+        append(f);
+        repeat(' ', (perpiece - f.length()) / 2);
+      }
+      append('\n');
+
+      if (depth < levels - 1) {
+        BST.Node[] below = new BST.Node[2 * nodes.length];
+        for (int j = 0; j < nodes.length; j++) {
+          if (nodes[j] != null && line[j] != CUT) {
+            below[2 * j] = nodes[j].getLeft();
+            below[2 * j + 1] = nodes[j].getRight();
+          }
+        }
+        nodes = below;
+        line = new String[below.length];
+      }
+      perpiece /= 2;
+    }
+  }
+
+  private static void addChild(List<BST.Node> level, BST.Node child) {
+    if (child != null) {
+      level.add(child);
+    }
+  }
+
+  /**
+   * @return What a node at the given depth is drawn as, CUT itself if it is cut off. Counts the
+   *     node if it is drawn.
+   */
+  private String label(BST.Node node, int depth) {
+    if (cut(depth)) {
+      return CUT;
+    }
+    rendered++;
+    return Integer.toString(node.getData());
+  }
+
+  private void repeat(char c, int count) throws IOException {
+    for (int k = 0; k < count; k++) {
+      append(c);
+    }
+  }
+
+  private void append(char c) throws IOException {
+    if (buffered == BUFFER_SIZE) {
+      flush();
+    }
+    buffer[buffered++] = c;
+  }
+
+  private void append(String s) throws IOException {
+    int length = s.length();
+    int start = 0;
+    while (start < length) {
+      if (buffered == BUFFER_SIZE) {
+        flush();
+      }
+      int count = Math.min(length - start, BUFFER_SIZE - buffered);
+      s.getChars(start, start + count, buffer, buffered);
+      buffered += count;
+      start += count;
+    }
+  }
+
+  private void append(char[] chars, int length) throws IOException {
+    int start = 0;
+    while (start < length) {
+      if (buffered == BUFFER_SIZE) {
+        flush();
+      }
+      int count = Math.min(length - start, BUFFER_SIZE - buffered);
+      System.arraycopy(chars, start, buffer, buffered, count);
+      buffered += count;
+      start += count;
+    }
+  }
+
+  /**
+   * Appends the digits of value straight into the buffer, without creating a String.
+   */
+  private void append(int value) throws IOException {
+
+    // An int has at most 10 digits and a sign.
+    if (BUFFER_SIZE - buffered < 11) {
+      flush();
+    }
+
+    // Work with the negative value, which, unlike the positive one, exists for every int.
+    int negative = value;
+    if (value < 0) {
+      buffer[buffered++] = '-';
+    } else {
+      negative = -value;
+    }
+    int digits = 1;
+    for (int rest = negative; rest <= -10; rest /= 10) {
+      digits++;
+    }
+    int position = buffered + digits;
+    do {
+      buffer[--position] = (char) ('0' - negative % 10);
+      negative /= 10;
+    } while (negative != 0);
+    buffered += digits;
+  }
+
+  /**
+   * Hands the buffered characters to the Appendable.
+   */
+  private void flush() throws IOException {
+    if (buffered == 0) {
+      return;
+    }
+    if (out instanceof Writer) {
+      ((Writer) out).write(buffer, 0, buffered);
+    } else if (out instanceof StringBuilder) {
+      ((StringBuilder) out).append(buffer, 0, buffered);
+    } else {
+      out.append(CharBuffer.wrap(buffer, 0, buffered));
+    }
+    buffered = 0;
+  }
+}
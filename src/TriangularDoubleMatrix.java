@@ -0,0 +1,28 @@
+/**
+ * A packed matrix of doubles. Used for the e and w matrices of an optimal binary search tree.
+ * See TriangularMatrix for the layout, HeapDoubleMatrix for the in-memory implementation and
+ * MappedDoubleMatrix for the memory-mapped implementation.
+ */
+public abstract class TriangularDoubleMatrix extends TriangularMatrix {
+
+  /**
+   * @param n Number of keys.
+   */
+  TriangularDoubleMatrix(int n) {
+    super(n);
+  }
+
+  /**
+   * @param i The lower bound of the range.
+   * @param j The upper bound of the range.
+   * @return The value stored in [i][j].
+   */
+  public abstract double get(int i, int j);
+
+  /**
+   * @param i The lower bound of the range.
+   * @param j The upper bound of the range.
+   * @param value The value to store in [i][j].
+   */
+  public abstract void set(int i, int j, double value);
+}
@@ -0,0 +1,29 @@
+/**
+ * A packed matrix of ints. Used for the root matrix of an optimal binary search tree. See
+ * TriangularMatrix for the layout, HeapIntMatrix for the in-memory implementation and
+ * MappedIntMatrix for the memory-mapped implementation. The root matrix never uses the cells
+ * [i][i-1], but sharing the layout with e and w keeps the indexing identical for all three.
+ */
+public abstract class TriangularIntMatrix extends TriangularMatrix {
+
+  /**
+   * @param n Number of keys.
+   */
+  TriangularIntMatrix(int n) {
+    super(n);
+  }
+
+  /**
+   * @param i The lower bound of the range.
+   * @param j The upper bound of the range.
+   * @return The value stored in [i][j].
+   */
+  public abstract int get(int i, int j);
+
+  /**
+   * @param i The lower bound of the range.
+   * @param j The upper bound of the range.
+   * @param value The value to store in [i][j].
+   */
+  public abstract void set(int i, int j, int value);
+}
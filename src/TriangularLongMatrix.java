@@ -0,0 +1,28 @@
+/**
+ * A packed matrix of longs. Used for the e and w matrices of OBSTBigDecimal, which are calculated
+ * in fixed point. See TriangularMatrix for the layout and HeapLongMatrix for the in-memory
+ * implementation.
+ */
+public abstract class TriangularLongMatrix extends TriangularMatrix {
+
+  /**
+   * @param n Number of keys.
+   */
+  TriangularLongMatrix(int n) {
+    super(n);
+  }
+
+  /**
+   * @param i The lower bound of the range.
+   * @param j The upper bound of the range.
+   * @return The value stored in [i][j].
+   */
+  public abstract long get(int i, int j);
+
+  /**
+   * @param i The lower bound of the range.
+   * @param j The upper bound of the range.
+   * @param value The value to store in [i][j].
+   */
+  public abstract void set(int i, int j, long value);
+}
@@ -0,0 +1,93 @@
+/**
+ * The shape shared by the e, w and root matrices of an optimal binary search tree. Only the
+ * cells [i][j] with 1 <= i <= n + 1 and i - 1 <= j <= n are ever used, which is a little over half
+ * of an (n + 2) x (n + 1) matrix. Instead of allocating the whole rectangle, subclasses pack the
+ * used cells row by row into one flat array:
+ *
+ *   row 1:     [1][0]  [1][1]  [1][2] ... [1][n]
+ *   row 2:             [2][1]  [2][2] ... [2][n]
+ *   ...
+ *   row n + 1:                            [n+1][n]
+ *
+ * Row i holds n - i + 2 cells, so the whole matrix holds (n + 1)(n + 2) / 2 cells.
+ */
+public abstract class TriangularMatrix {
+
+  /**
+   * Number of keys.
+   */
+  final int n;
+
+  /**
+   * The position of the (imaginary) cell [i][0] in the flat array, for each row i. Adding j to
+   * this gives the position of [i][j], which saves a multiplication on every access.
+   */
+  final long[] rowStart;
+
+  /**
+   * @param n Number of keys.
+   */
+  TriangularMatrix(int n) {
+    this.n = n;
+
+    rowStart = new long[n + 2];
+    long offset = 0;
+    for (int i = 1; i <= n + 1; i++) {
+      rowStart[i] = offset - (i - 1);
+      offset += n - i + 2;
+    }
+  }
+
+  /**
+   * @return Number of keys.
+   */
+  public int getN() {return n;}
+
+  /**
+   * Returns the number of cells needed to store a matrix for n keys.
+   *
+   * @param n Number of keys.
+   * @return The number of cells in the packed matrix.
+   */
+  public static long size(int n) {
+    return ((long) n + 1) * ((long) n + 2) / 2;
+  }
+
+  /**
+   * Returns whether the cell [i][j] is stored in the matrix.
+   *
+   * @param i The lower bound of the range.
+   * @param j The upper bound of the range.
+   * @return True if [i][j] is within the packed triangle.
+   */
+  public boolean contains(int i, int j) {
+    return i >= 1 && i <= n + 1 && j >= i - 1 && j <= n;
+  }
+
+  /**
+   * Returns the position of the cell [i][j] in the flat array. The caller is responsible for
+   * making sure the cell is within the triangle (see contains()).
+   *
+   * @param i The lower bound of the range.
+   * @param j The upper bound of the range.
+   * @return The position of [i][j] in the flat array.
+   */
+  long index(int i, int j) {
+    return rowStart[i] + j;
+  }
+
+  /**
+   * Returns the number of cells in a flat array, or throws if a Java array cannot hold them.
+   *
+   * @param n Number of keys.
+   * @return The number of cells in the packed matrix.
+   */
+  static int arraySize(int n) {
+    long size = size(n);
+    if (size > Integer.MAX_VALUE - 8) {
+      throw new IllegalArgumentException("A packed matrix for " + n + " keys needs " + size
+          + " cells, which is more than a Java array can hold. Use a mapped matrix instead.");
+    }
+    return (int) size;
+  }
+}